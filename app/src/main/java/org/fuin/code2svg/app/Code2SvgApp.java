@@ -25,12 +25,18 @@ import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.zip.Deflater;
 
 import org.fuin.code2svg.core.Code2Svg;
-import org.fuin.code2svg.core.Code2SvgConfig;
 import org.fuin.code2svg.core.Code2SvgUtils;
+import org.fuin.code2svg.core.CompiledConfig;
+import org.fuin.code2svg.core.ConvertDirResult;
+import org.fuin.code2svg.core.TokenCache;
 import org.fuin.ext4logback.NewLogConfigFileParams;
 import org.fuin.utils4j.JaxbUtils;
 import org.fuin.utils4j.Utils4J;
@@ -44,6 +50,20 @@ public final class Code2SvgApp {
 
     private static final Logger LOG = LoggerFactory.getLogger(Code2SvgApp.class);
 
+    private static final String WATCH = "--watch";
+
+    private static final String TOKEN_CACHE = "--token-cache=";
+
+    private static final String SVGZ = "--svgz";
+
+    private static final String SHARED_CSS = "--shared-css";
+
+    private static final String COMPACT = "--compact";
+
+    private static final String PAGE_LINES = "--page-lines=";
+
+    private static final String AUTO_SIZE = "--auto-size";
+
     private static URL url(File file) {
         try {
             return file.toURI().toURL();
@@ -52,20 +72,55 @@ public final class Code2SvgApp {
         }
     }
 
-    private static void execute(final File configFile, final File targetDir, final List<String> filenames) {
+    /**
+     * Parses an integer argument.
+     * 
+     * @param value
+     *            Text to parse.
+     * @param min
+     *            Minimum allowed value.
+     * @param max
+     *            Maximum allowed value.
+     * 
+     * @return Value or <code>null</code> if the text is no number in the allowed range.
+     */
+    private static Integer parseInt(final String value, final int min, final int max) {
+        try {
+            final int i = Integer.parseInt(value);
+            if (i < min || i > max) {
+                return null;
+            }
+            return i;
+        } catch (final NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static void execute(final File configFile, final File targetDir, final List<String> filenames,
+            final Code2Svg converter) {
 
         final String configXml = Utils4J.readAsString(url(configFile), "utf-8", 1024);
-        final Code2SvgConfig config = JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES);
+        final CompiledConfig config = new CompiledConfig(JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES));
 
-        final Code2Svg converter = new Code2Svg();
-        filenames.forEach(filename -> {
+        int written = 0;
+        int unchanged = 0;
+        for (final String filename : filenames) {
             final File file = new File(filename);
             if (file.isDirectory()) {
-                converter.convertDir(config, file, targetDir);
+                final ConvertDirResult result = converter.convertDir(config, file, targetDir, 1);
+                if (!result.isSuccess()) {
+                    throw new RuntimeException("Failed to convert " + result.getFailures().size() + " file(s) in '" + file + "': "
+                            + result.getFailures().keySet(), result.getFailures().values().iterator().next());
+                }
+                written = written + result.getWrittenCount();
+                unchanged = unchanged + result.getUnchangedCount();
+            } else if (converter.convertFile(config, file.getParentFile(), file, targetDir)) {
+                written++;
             } else {
-                converter.convertFile(config, file.getParentFile(), file, targetDir);
+                unchanged++;
             }
-        });
+        }
+        LOG.info("Wrote {} SVG file(s), {} SVG file(s) had the same content already", written, unchanged);
 
     }
 
@@ -115,8 +170,45 @@ public final class Code2SvgApp {
 
     public static void main(String[] args) {
 
-        if (args == null || args.length < 3) {
-            System.out.println("Required arguments: <config-path-and-name> <target dir> <source file or dir 1> ... <source file or dir N>");
+        final List<String> argList = new ArrayList<>(args == null ? Collections.emptyList() : Arrays.asList(args));
+        final boolean watch = argList.remove(WATCH);
+        final boolean sharedCss = argList.remove(SHARED_CSS);
+        final boolean compact = argList.remove(COMPACT);
+        final boolean autoSize = argList.remove(AUTO_SIZE);
+        String tokenCacheDir = null;
+        Integer compressionLevel = null;
+        int pageLines = 0;
+        boolean valid = true;
+        for (final Iterator<String> it = argList.iterator(); it.hasNext();) {
+            final String arg = it.next();
+            if (arg.startsWith(TOKEN_CACHE)) {
+                tokenCacheDir = arg.substring(TOKEN_CACHE.length());
+                it.remove();
+            } else if (arg.equals(SVGZ)) {
+                compressionLevel = Deflater.BEST_COMPRESSION;
+                it.remove();
+            } else if (arg.startsWith(SVGZ + "=")) {
+                compressionLevel = parseInt(arg.substring(SVGZ.length() + 1), Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION);
+                if (compressionLevel == null) {
+                    System.err.println("Invalid compression level: " + arg);
+                    valid = false;
+                }
+                it.remove();
+            } else if (arg.startsWith(PAGE_LINES)) {
+                final Integer lines = parseInt(arg.substring(PAGE_LINES.length()), 1, Integer.MAX_VALUE);
+                if (lines == null) {
+                    System.err.println("Invalid number of lines per page: " + arg);
+                    valid = false;
+                } else {
+                    pageLines = lines;
+                }
+                it.remove();
+            }
+        }
+        if (!valid || argList.size() < 3) {
+            System.out.println("Required arguments: [" + WATCH + "] [" + TOKEN_CACHE + "<dir>] [" + SVGZ + "[=<level 0-9>]] ["
+                    + SHARED_CSS + "] [" + COMPACT + "] [" + AUTO_SIZE + "] [" + PAGE_LINES
+                    + "<lines>] <config-path-and-name> <target dir> <source file or dir 1> ... <source file or dir N>");
             System.exit(1);
         }
 
@@ -124,17 +216,44 @@ public final class Code2SvgApp {
             initLogback();
             LOG.info("Application running...");
 
-            final File configFile = new File(args[0]);
+            final File configFile = new File(argList.get(0));
             Utils4J.checkValidFile(configFile);
-            final File targetDir = new File(args[1]);
+            final File targetDir = new File(argList.get(1));
             Utils4J.checkValidDir(targetDir);
-            final List<String> filenames = Arrays.asList(Arrays.copyOfRange(args, 2, args.length));
+            final List<String> filenames = argList.subList(2, argList.size());
 
             LOG.info("configFile={}", configFile);
             LOG.info("targetDir={}", targetDir);
             LOG.info("filenames={}", filenames);
+            LOG.info("watch={}", watch);
+            LOG.info("tokenCacheDir={}", tokenCacheDir);
+            LOG.info("compressionLevel={}", compressionLevel);
+            LOG.info("sharedCss={}", sharedCss);
+            LOG.info("compact={}", compact);
+            LOG.info("autoSize={}", autoSize);
+            LOG.info("pageLines={}", pageLines);
 
-            execute(configFile, targetDir, filenames);
+            final Code2Svg.Builder builder = new Code2Svg.Builder().sharedCss(sharedCss).compact(compact)
+                    .autoSize(autoSize).pageLines(pageLines);
+            if (tokenCacheDir != null) {
+                builder.tokenCache(new TokenCache(new File(tokenCacheDir)));
+            }
+            if (compressionLevel != null) {
+                builder.svgz(compressionLevel);
+            }
+            final Code2Svg converter = builder.build();
+
+            if (watch) {
+                final List<File> sources = new ArrayList<>();
+                filenames.forEach(filename -> sources.add(new File(filename)));
+                try {
+                    new SourceWatcher(configFile, targetDir, sources, converter).run();
+                } catch (final IOException ex) {
+                    throw new RuntimeException("Error watching the sources", ex);
+                }
+            } else {
+                execute(configFile, targetDir, filenames, converter);
+            }
 
             System.exit(0);
 
@@ -0,0 +1,323 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.app;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.code2svg.core.Code2Svg;
+import org.fuin.code2svg.core.Code2SvgUtils;
+import org.fuin.code2svg.core.CompiledConfig;
+import org.fuin.utils4j.JaxbUtils;
+import org.fuin.utils4j.Utils4J;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts all sources once and then watches them for changes. Only changed or created sources are converted again and the SVG
+ * files of deleted sources are removed. A change of the configuration file converts all sources again. Events arriving within a
+ * short time are processed together, so saving many files at once (or an editor writing a file in several steps) only converts
+ * every source once.
+ */
+final class SourceWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SourceWatcher.class);
+
+    private static final long QUIET_PERIOD_MILLIS = 300;
+
+    private final Code2Svg converter;
+
+    private final Path configFile;
+
+    private final File targetDir;
+
+    private final List<File> sources;
+
+    private final Map<WatchKey, Path> keys;
+
+    private CompiledConfig config;
+
+    private WatchService watchService;
+
+    /**
+     * Constructor with all mandatory data.
+     * 
+     * @param configFile
+     *            Configuration file.
+     * @param targetDir
+     *            Target directory for the SVG files.
+     * @param sources
+     *            Source files or directories.
+     * @param converter
+     *            Converter to use.
+     */
+    SourceWatcher(@NotNull final File configFile, @NotNull final File targetDir, @NotNull final List<File> sources,
+            @NotNull final Code2Svg converter) {
+        super();
+        Utils4J.checkNotNull("configFile", configFile);
+        Utils4J.checkNotNull("targetDir", targetDir);
+        Utils4J.checkNotNull("sources", sources);
+        Utils4J.checkNotNull("converter", converter);
+        this.converter = converter;
+        this.configFile = configFile.toPath().toAbsolutePath().normalize();
+        this.targetDir = targetDir;
+        this.sources = new ArrayList<>();
+        for (final File source : sources) {
+            this.sources.add(source.getAbsoluteFile());
+        }
+        this.keys = new HashMap<>();
+    }
+
+    /**
+     * Converts all sources and watches them until the thread is interrupted.
+     * 
+     * @throws IOException
+     *             Error watching the files.
+     */
+    void run() throws IOException {
+        try (final WatchService ws = FileSystems.getDefault().newWatchService()) {
+            this.watchService = ws;
+            register(configFile.getParent());
+            for (final File source : sources) {
+                if (source.isDirectory()) {
+                    registerAll(source.toPath());
+                } else {
+                    register(source.toPath().getParent());
+                }
+            }
+            reloadAndConvertAll();
+            LOG.info("Watching for changes...");
+            while (!Thread.currentThread().isInterrupted()) {
+                final Set<Path> changed = new LinkedHashSet<>();
+                if (!collect(changed)) {
+                    return;
+                }
+                process(changed);
+            }
+        }
+    }
+
+    /**
+     * Waits for the next events and collects events until nothing happened for a short time.
+     * 
+     * @param changed
+     *            Set to add the changed paths to. An overflow is reported as <code>null</code> element.
+     * 
+     * @return FALSE if the thread was interrupted.
+     */
+    private boolean collect(final Set<Path> changed) {
+        try {
+            WatchKey key = watchService.take();
+            while (key != null) {
+                final Path dir = keys.get(key);
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        changed.add(null);
+                    } else if (dir != null) {
+                        changed.add(dir.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    keys.remove(key);
+                }
+                key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void process(final Set<Path> changed) {
+        if (changed.contains(null)) {
+            LOG.info("Events lost - Converting all sources");
+            reloadAndConvertAll();
+            return;
+        }
+        if (changed.contains(configFile)) {
+            if (reload()) {
+                LOG.info("Configuration changed - Converting all sources");
+                // Converting all sources does not visit the deleted ones
+                changed.stream().filter(path -> !Files.exists(path)).forEach(this::process);
+                convertAll();
+                return;
+            }
+            LOG.info("Configuration file changed without effect on the output");
+        }
+        changed.forEach(this::process);
+    }
+
+    private void process(final Path path) {
+        final File file = path.toFile();
+        final File srcDir = findSourceDir(file);
+        if (srcDir == null) {
+            return;
+        }
+        try {
+            if (file.isDirectory()) {
+                registerAll(path);
+                convertAll(srcDir, path);
+            } else if (file.isFile()) {
+                converter.convertFile(config, srcDir, file, targetDir);
+            } else {
+                removeStale(srcDir, file);
+            }
+        } catch (final RuntimeException | IOException ex) {
+            LOG.error("Failed to process: " + file, ex);
+        }
+    }
+
+    private void convertAll(final File srcDir, final Path dir) throws IOException {
+        try (final Stream<Path> paths = Files.walk(dir)) {
+            for (final Path path : (Iterable<Path>) paths::iterator) {
+                final File file = path.toFile();
+                if (file.isFile() && file.getName().endsWith(config.getFileExtension())) {
+                    converter.convertFile(config, srcDir, file, targetDir);
+                }
+            }
+        }
+    }
+
+    private void reloadAndConvertAll() {
+        reload();
+        convertAll();
+    }
+
+    /**
+     * Reads the configuration file. If the file is invalid, the last valid configuration is kept.
+     * 
+     * @return TRUE if the new configuration creates a different output than the last one.
+     */
+    private boolean reload() {
+        final CompiledConfig newConfig;
+        try {
+            final String configXml = Utils4J.readAsString(configFile.toUri().toURL(), "utf-8", 1024);
+            newConfig = new CompiledConfig(JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES));
+        } catch (final RuntimeException | IOException ex) {
+            if (config == null) {
+                throw new RuntimeException("Failed to read configuration: " + configFile, ex);
+            }
+            LOG.error("Failed to read configuration - Keeping the last valid one: " + configFile, ex);
+            return false;
+        }
+        final boolean changed = config == null || !config.getFingerprint().equals(newConfig.getFingerprint());
+        config = newConfig;
+        return changed;
+    }
+
+    private void convertAll() {
+        for (final File source : sources) {
+            if (source.isDirectory()) {
+                converter.convertDir(config, source, targetDir, 1).getFailures()
+                        .forEach((f, ex) -> LOG.error("Failed to convert: " + f, ex));
+            } else if (source.isFile()) {
+                try {
+                    converter.convertFile(config, source.getParentFile(), source, targetDir);
+                } catch (final RuntimeException ex) {
+                    LOG.error("Failed to convert: " + source, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the source directory a file belongs to.
+     * 
+     * @param file
+     *            Changed file.
+     * 
+     * @return Directory used as base for the relative target path or <code>null</code> if the file is no source.
+     */
+    private File findSourceDir(final File file) {
+        for (final File source : sources) {
+            if (source.equals(file)) {
+                return source.getParentFile();
+            }
+            if (isInside(file, source) && (file.isDirectory() || file.getName().endsWith(config.getFileExtension())
+                    || !file.exists())) {
+                return source;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deletes the SVG files of a deleted source. If the source was a directory, all SVG files without source in the
+     * corresponding target directory are deleted.
+     */
+    private void removeStale(final File srcDir, final File file) throws IOException {
+        final String extension = converter.getTargetExtension();
+        converter.deleteTargetFiles(srcDir, file, targetDir);
+        final File dir = new File(targetDir, Utils4J.getRelativePath(srcDir, file));
+        if (!dir.isDirectory() || dir.equals(targetDir)) {
+            return;
+        }
+        final String suffix = config.getFileExtension() + extension;
+        try (final Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.filter(p -> p.getFileName().toString().endsWith(suffix)).forEach(svg -> {
+                final String name = svg.getFileName().toString();
+                final File source = new File(new File(file, Utils4J.getRelativePath(dir, svg.getParent().toFile())),
+                        name.substring(0, name.length() - extension.length()));
+                if (!source.exists()) {
+                    converter.deleteTargetFiles(file, source, dir);
+                }
+            });
+        }
+    }
+
+    private void registerAll(final Path dir) throws IOException {
+        try (final Stream<Path> paths = Files.walk(dir)) {
+            for (final Path path : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                register(path);
+            }
+        }
+    }
+
+    private void register(final Path dir) throws IOException {
+        if (!keys.containsValue(dir)) {
+            keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+        }
+    }
+
+    private static boolean isInside(final File file, final File dir) {
+        return file.toPath().startsWith(dir.toPath());
+    }
+
+}
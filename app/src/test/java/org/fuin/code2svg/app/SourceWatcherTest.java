@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.app;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.io.FileUtils;
+import org.fuin.code2svg.core.Code2Svg;
+import org.fuin.code2svg.core.Code2SvgConfig;
+import org.fuin.code2svg.core.Code2SvgUtils;
+import org.fuin.code2svg.core.StringElement;
+import org.fuin.utils4j.JaxbUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SourceWatcher}.
+ */
+public class SourceWatcherTest {
+
+    // CHECKSTYLE:OFF
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private File dir;
+
+    private File configFile;
+
+    private File srcDir;
+
+    private File targetDir;
+
+    private Thread thread;
+
+    @Before
+    public void setup() throws IOException {
+        dir = new File(System.getProperty("java.io.tmpdir"), "code2svg-source-watcher");
+        FileUtils.deleteDirectory(dir);
+        srcDir = new File(dir, "src");
+        targetDir = new File(dir, "target");
+        srcDir.mkdirs();
+        targetDir.mkdirs();
+        configFile = new File(dir, "code2svg.xml");
+        writeConfig("fill: blue");
+        FileUtils.write(new File(srcDir, "A.ddd"), "a \"b\"", StandardCharsets.UTF_8);
+        FileUtils.write(new File(srcDir, "sub/B.ddd"), "b \"c\"", StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(TIMEOUT_MILLIS);
+        }
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testConvertAllOnStart() {
+
+        // TEST
+        start();
+
+        // VERIFY
+        assertThat(svg("A.ddd")).exists();
+        assertThat(svg("sub/B.ddd")).exists();
+
+    }
+
+    @Test
+    public void testChangedSource() throws IOException {
+
+        // PREPARE
+        start();
+
+        // TEST
+        FileUtils.write(new File(srcDir, "A.ddd"), "changed", StandardCharsets.UTF_8);
+
+        // VERIFY
+        await(() -> read(svg("A.ddd")).contains("changed"));
+
+    }
+
+    @Test
+    public void testCreatedSource() throws IOException {
+
+        // PREPARE
+        start();
+
+        // TEST
+        FileUtils.write(new File(srcDir, "sub/C.ddd"), "created", StandardCharsets.UTF_8);
+
+        // VERIFY
+        await(() -> svg("sub/C.ddd").exists());
+        assertThat(read(svg("sub/C.ddd"))).contains("created");
+
+    }
+
+    @Test
+    public void testDeletedSource() {
+
+        // PREPARE
+        start();
+
+        // TEST
+        assertThat(new File(srcDir, "sub/B.ddd").delete()).isTrue();
+
+        // VERIFY
+        await(() -> !svg("sub/B.ddd").exists());
+        assertThat(svg("A.ddd")).exists();
+
+    }
+
+    @Test
+    public void testChangedConfig() throws IOException {
+
+        // PREPARE
+        start();
+
+        // TEST
+        writeConfig("fill: red");
+
+        // VERIFY
+        await(() -> read(svg("A.ddd")).contains("fill: red") && read(svg("sub/B.ddd")).contains("fill: red"));
+
+    }
+
+    @Test
+    public void testChangedConfigAndDeletedSource() throws IOException {
+
+        // PREPARE
+        start();
+
+        // TEST
+        writeConfig("fill: red");
+        assertThat(new File(srcDir, "sub/B.ddd").delete()).isTrue();
+
+        // VERIFY
+        await(() -> read(svg("A.ddd")).contains("fill: red"));
+        await(() -> !svg("sub/B.ddd").exists());
+
+    }
+
+    private void start() {
+        final SourceWatcher watcher = new SourceWatcher(configFile, targetDir, Collections.singletonList(srcDir), new Code2Svg());
+        thread = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (final IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        thread.start();
+        await(() -> svg("A.ddd").exists() && svg("sub/B.ddd").exists());
+    }
+
+    private void writeConfig(final String css) throws IOException {
+        final Code2SvgConfig config = new Code2SvgConfig.Builder().fileExtension(".ddd")
+                .addElement(new StringElement("string", css)).build();
+        FileUtils.write(configFile, JaxbUtils.marshal(config, Code2SvgUtils.JAXB_CLASSES), StandardCharsets.UTF_8);
+    }
+
+    private File svg(final String source) {
+        return new File(targetDir, source + ".svg");
+    }
+
+    private static String read(final File file) {
+        try {
+            return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+        } catch (final IOException ex) {
+            // Not written yet
+            return "";
+        }
+    }
+
+    private static void await(final BooleanSupplier condition) {
+        final long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("Timeout").isLessThan(end);
+            try {
+                Thread.sleep(50);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    // CHECKSTYLE:ON
+
+}
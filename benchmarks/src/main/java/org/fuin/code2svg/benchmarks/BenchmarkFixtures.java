@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.benchmarks;
+
+import java.net.URL;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.code2svg.core.Code2SvgConfig;
+import org.fuin.code2svg.core.Code2SvgUtils;
+import org.fuin.utils4j.JaxbUtils;
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Loads the configurations and source models used by the benchmarks. The files are the test fixtures of the core module.
+ */
+final class BenchmarkFixtures {
+
+    /** Configuration without file configurations. */
+    static final String CONFIG = "/code2svg.xml";
+
+    /** Configuration with a file configuration matching the model. */
+    static final String CONFIG_WITH_FILE_CONFIGS = "/code2svg-2.xml";
+
+    /** Source model with all kinds of elements. */
+    static final String MODEL = "/Alpha3CountryCode.ddd";
+
+    /** Average length of a line created by the {@link CorpusGenerator} with default settings. */
+    private static final int AVG_LINE_LENGTH = 38;
+
+    private BenchmarkFixtures() {
+        throw new UnsupportedOperationException("It's not allowed to create an instance of a utility class");
+    }
+
+    /**
+     * Loads a configuration.
+     * 
+     * @param resource
+     *            Name of the resource like {@link #CONFIG}.
+     * 
+     * @return Configuration.
+     */
+    static Code2SvgConfig config(@NotNull final String resource) {
+        final String configXml = Utils4J.readAsString(url(resource), "utf-8", 1024);
+        return JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES);
+    }
+
+    /**
+     * Returns a model of the given size. The fixed sizes are built by repeating {@link #MODEL}, sizes in megabyte are created by
+     * the {@link CorpusGenerator} with a fixed seed.
+     * 
+     * @param size
+     *            One of "small" (the model once, less than 1 KB), "medium" (100 times, about 70 KB), "huge" (10000 times, about
+     *            7 MB) or a number of megabytes like "1mb" or "50mb".
+     * 
+     * @return Source text.
+     */
+    static String model(@NotNull final String size) {
+        if (size.endsWith("mb")) {
+            final int megabytes = Integer.parseInt(size.substring(0, size.length() - 2));
+            return new CorpusGenerator.Builder().files(1).linesPerFile(megabytes * 1024 * 1024 / AVG_LINE_LENGTH).build()
+                    .generateFile(0);
+        }
+        final String model = Utils4J.readAsString(url(MODEL), "utf-8", 1024);
+        final int copies;
+        switch (size) {
+        case "small":
+            copies = 1;
+            break;
+        case "medium":
+            copies = 100;
+            break;
+        case "huge":
+            copies = 10000;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown size: " + size);
+        }
+        final StringBuilder sb = new StringBuilder(model.length() * copies);
+        for (int i = 0; i < copies; i++) {
+            sb.append(model);
+        }
+        return sb.toString();
+    }
+
+    private static URL url(final String resource) {
+        final URL url = BenchmarkFixtures.class.getResource(resource);
+        if (url == null) {
+            throw new IllegalStateException("Resource not found: " + resource);
+        }
+        return url;
+    }
+
+}
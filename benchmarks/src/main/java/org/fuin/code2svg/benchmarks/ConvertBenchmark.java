@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.fuin.code2svg.core.Code2Svg;
+import org.fuin.code2svg.core.Code2SvgConfig;
+import org.fuin.code2svg.core.CompiledConfig;
+import org.fuin.code2svg.core.SvgRenderer;
+import org.fuin.code2svg.core.TokenizedSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the conversion of a model in memory: The single steps (tokenize, render) and the complete conversion. Larger generated
+ * models can be selected with a size in megabyte like "-p size=50mb".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark {
+
+    @Param({ "small", "medium", "huge" })
+    public String size;
+
+    private Code2Svg code2svg;
+
+    private Code2SvgConfig config;
+
+    private CompiledConfig compiledConfig;
+
+    private String model;
+
+    private SvgRenderer renderer;
+
+    private TokenizedSource source;
+
+    /**
+     * Loads configuration and model and runs the steps once to have input for the later steps.
+     */
+    @Setup
+    public void setup() {
+        code2svg = new Code2Svg();
+        config = BenchmarkFixtures.config(BenchmarkFixtures.CONFIG);
+        compiledConfig = new CompiledConfig(config);
+        model = BenchmarkFixtures.model(size);
+        renderer = new SvgRenderer();
+        source = code2svg.tokenize(compiledConfig, model);
+    }
+
+    /**
+     * Prepares the text (removes the inline configuration, escapes the text and replaces the entities) and locates all elements.
+     * 
+     * @return Tokens.
+     */
+    @Benchmark
+    public TokenizedSource tokenize() {
+        return code2svg.tokenize(compiledConfig, model);
+    }
+
+    /**
+     * Renders already located tokens into a complete SVG document written to a writer that discards everything.
+     * 
+     * @throws IOException
+     *             Never thrown by the writer.
+     */
+    @Benchmark
+    public void render() throws IOException {
+        renderer.render(source, Writer.nullWriter());
+    }
+
+    /**
+     * Converts the model including compiling the configuration.
+     * 
+     * @return SVG text content.
+     */
+    @Benchmark
+    public String convert() {
+        return code2svg.convert(new CompiledConfig(config), model);
+    }
+
+    /**
+     * Converts the model with the already compiled configuration.
+     * 
+     * @return SVG text content.
+     */
+    @Benchmark
+    public String convertCompiled() {
+        return code2svg.convert(compiledConfig, model);
+    }
+
+    /**
+     * Converts the model into a complete SVG document written to a writer that discards everything.
+     */
+    @Benchmark
+    public void convertStream() {
+        code2svg.convert(compiledConfig, new StringReader(model), Writer.nullWriter());
+    }
+
+}
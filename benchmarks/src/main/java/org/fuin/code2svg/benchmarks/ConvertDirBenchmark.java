@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.fuin.code2svg.core.Code2Svg;
+import org.fuin.code2svg.core.CompiledConfig;
+import org.fuin.code2svg.core.ConvertDirResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the conversion of a directory tree with many small files including reading and writing the files. The files are
+ * created by the {@link CorpusGenerator} with a fixed seed. Large corpora can be selected with "-p files=100000".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConvertDirBenchmark {
+
+    @Param({ "500" })
+    public int files;
+
+    @Param({ "50" })
+    public int lines;
+
+    @Param({ "1", "4" })
+    public int parallelism;
+
+    private Code2Svg code2svg;
+
+    private CompiledConfig config;
+
+    private Path baseDir;
+
+    private File srcDir;
+
+    private File targetDir;
+
+    /**
+     * Creates the source files.
+     * 
+     * @throws IOException
+     *             Error writing the files.
+     */
+    @Setup
+    public void setup() throws IOException {
+        code2svg = new Code2Svg();
+        config = new CompiledConfig(BenchmarkFixtures.config(BenchmarkFixtures.CONFIG_WITH_FILE_CONFIGS));
+        baseDir = Files.createTempDirectory("code2svg-benchmark");
+        srcDir = baseDir.resolve("src").toFile();
+        targetDir = baseDir.resolve("target").toFile();
+        new CorpusGenerator.Builder().files(files).linesPerFile(lines).build().writeTree(srcDir);
+    }
+
+    /**
+     * Deletes all files.
+     * 
+     * @throws IOException
+     *             Error deleting the files.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        try (final Stream<Path> paths = Files.walk(baseDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Converts all files of the directory.
+     * 
+     * @return Result.
+     */
+    @Benchmark
+    public ConvertDirResult convertDir() {
+        final ConvertDirResult result = code2svg.convertDir(config, srcDir, targetDir, parallelism);
+        if (!result.isSuccess()) {
+            throw new IllegalStateException("Conversion failed: " + result);
+        }
+        return result;
+    }
+
+}
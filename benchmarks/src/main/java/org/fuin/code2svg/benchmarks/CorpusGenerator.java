@@ -0,0 +1,511 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Generates ".ddd" like source files with random content for benchmarks and soak tests. The content only depends on the seed and
+ * the parameters, so the same corpus can be created again at any time. Every file is created with its own random generator
+ * (seed and file index), so a single file can be created without creating the files before it.<br>
+ * <br>
+ * Lines are either comments (single line or multi line) or statements. A statement is a sequence of tokens, each token being a
+ * keyword, a string, a number, an entity marker like "°°x2777°°" or a plain identifier with the configured probabilities.<br>
+ * <br>
+ * Usage from the command line (All arguments are optional):
+ * 
+ * <pre>
+ * java -cp benchmarks.jar org.fuin.code2svg.benchmarks.CorpusGenerator --target=target/corpus --files=100000 --lines=50 --seed=1
+ * </pre>
+ */
+public final class CorpusGenerator {
+
+    /** Keywords of the DDD DSL used if no other keywords are set. */
+    public static final List<String> DEFAULT_KEYWORDS = Collections.unmodifiableList(Arrays.asList("aggregate", "base", "constraint",
+            "constructor", "context", "entity", "enum", "event", "examples", "exception", "false", "import", "invariants", "label",
+            "message", "method", "namespace", "null", "nullable", "preconditions", "returns", "service", "slabel", "tooltip", "true",
+            "type", "value-object"));
+
+    private static final String[] WORDS = { "country", "code", "value", "internal", "used", "in", "UI", "alpha", "three", "letter",
+            "defined", "customer", "order", "amount", "name", "address", "id", "state", "created", "changed" };
+
+    private static final String[] TYPES = { "String", "Integer", "Long", "Boolean", "Date", "Amount", "CustomerId", "OrderId" };
+
+    private final long seed;
+
+    private final int files;
+
+    private final int filesPerDir;
+
+    private final int linesPerFile;
+
+    private final double keywordDensity;
+
+    private final double stringRatio;
+
+    private final double numberRatio;
+
+    private final double entityRatio;
+
+    private final double commentRatio;
+
+    private final boolean header;
+
+    private final List<String> keywords;
+
+    private CorpusGenerator(final Builder builder) {
+        super();
+        this.seed = builder.seed;
+        this.files = builder.files;
+        this.filesPerDir = builder.filesPerDir;
+        this.linesPerFile = builder.linesPerFile;
+        this.keywordDensity = builder.keywordDensity;
+        this.stringRatio = builder.stringRatio;
+        this.numberRatio = builder.numberRatio;
+        this.entityRatio = builder.entityRatio;
+        this.commentRatio = builder.commentRatio;
+        this.header = builder.header;
+        this.keywords = Collections.unmodifiableList(new ArrayList<>(builder.keywords));
+    }
+
+    /**
+     * Returns the number of files.
+     * 
+     * @return Number of files created by {@link #writeTree(File)}.
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the relative path of a file inside the tree.
+     * 
+     * @param index
+     *            Index of the file (0 ... files - 1).
+     * 
+     * @return Path like "dir0/Model0.ddd".
+     */
+    public String getPath(final int index) {
+        return "dir" + (index / filesPerDir) + "/Model" + index + ".ddd";
+    }
+
+    /**
+     * Creates the content of a single file.
+     * 
+     * @param index
+     *            Index of the file.
+     * 
+     * @return Source text with lines separated by '\n'.
+     */
+    public String generateFile(final int index) {
+        final Random random = new Random(seed * 1_000_003L + index);
+        final StringBuilder sb = new StringBuilder(linesPerFile * 48);
+        int lines = 0;
+        if (header) {
+            sb.append("@code2svg:{\"width\":").append(400 + random.nextInt(8) * 100).append(", \"height\": ")
+                    .append(100 + random.nextInt(8) * 100).append("}\n");
+            lines++;
+        }
+        sb.append("namespace org.example.model").append(index).append(" {\n");
+        lines++;
+        while (lines < linesPerFile - 1) {
+            final int remaining = linesPerFile - 1 - lines;
+            if (random.nextDouble() < commentRatio) {
+                if (remaining >= 3 && random.nextBoolean()) {
+                    sb.append("    /**\n     * ");
+                    appendWords(sb, random, 3 + random.nextInt(8));
+                    sb.append("\n     */\n");
+                    lines = lines + 3;
+                } else {
+                    sb.append("    // ");
+                    appendWords(sb, random, 2 + random.nextInt(6));
+                    sb.append('\n');
+                    lines++;
+                }
+            } else {
+                sb.append("    ");
+                appendStatement(sb, random, 2 + random.nextInt(7));
+                sb.append('\n');
+                lines++;
+            }
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Writes all files into a directory. Existing files are overwritten.
+     * 
+     * @param targetDir
+     *            Directory to create the files in.
+     * 
+     * @return Number of characters written.
+     * 
+     * @throws IOException
+     *             Error writing a file.
+     */
+    public long writeTree(@NotNull final File targetDir) throws IOException {
+        Utils4J.checkNotNull("targetDir", targetDir);
+        long chars = 0;
+        for (int i = 0; i < files; i++) {
+            final File file = new File(targetDir, getPath(i));
+            if (i % filesPerDir == 0) {
+                Files.createDirectories(file.getParentFile().toPath());
+            }
+            final String content = generateFile(i);
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            chars = chars + content.length();
+        }
+        return chars;
+    }
+
+    private void appendStatement(final StringBuilder sb, final Random random, final int tokens) {
+        for (int i = 0; i < tokens; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            final double r = random.nextDouble();
+            if (r < keywordDensity) {
+                sb.append(keywords.get(random.nextInt(keywords.size())));
+            } else if (r < keywordDensity + stringRatio) {
+                sb.append('"');
+                appendWords(sb, random, 1 + random.nextInt(4));
+                sb.append('"');
+            } else if (r < keywordDensity + stringRatio + numberRatio) {
+                appendNumber(sb, random);
+            } else if (r < keywordDensity + stringRatio + numberRatio + entityRatio) {
+                sb.append("°°x").append(Integer.toHexString(0x2776 + random.nextInt(10)).toUpperCase()).append("°°");
+            } else if (random.nextBoolean()) {
+                sb.append(TYPES[random.nextInt(TYPES.length)]);
+            } else {
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+        }
+    }
+
+    private static void appendNumber(final StringBuilder sb, final Random random) {
+        switch (random.nextInt(3)) {
+        case 0:
+            sb.append(random.nextInt(1000));
+            break;
+        case 1:
+            sb.append(random.nextInt(100)).append('.').append(random.nextInt(100));
+            break;
+        default:
+            sb.append("0x").append(Integer.toHexString(random.nextInt(0x10000)));
+            break;
+        }
+    }
+
+    private static void appendWords(final StringBuilder sb, final Random random, final int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CorpusGenerator [seed=" + seed + ", files=" + files + ", linesPerFile=" + linesPerFile + ", keywordDensity="
+                + keywordDensity + ", stringRatio=" + stringRatio + ", numberRatio=" + numberRatio + ", entityRatio=" + entityRatio
+                + ", commentRatio=" + commentRatio + ", header=" + header + "]";
+    }
+
+    /**
+     * Creates a corpus on disk. Arguments have the form "--name=value" with the names of the builder methods in lower case
+     * separated by a dash and "--target=dir" for the target directory.
+     * 
+     * @param args
+     *            Arguments like "--files=1000".
+     * 
+     * @throws IOException
+     *             Error writing a file.
+     */
+    public static void main(final String[] args) throws IOException {
+        final Builder builder = new Builder();
+        File target = new File("target/corpus");
+        for (final String arg : args) {
+            final int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected argument like '--name=value', but was: '" + arg + "'");
+            }
+            final String name = arg.substring(2, eq);
+            final String value = arg.substring(eq + 1);
+            switch (name) {
+            case "target":
+                target = new File(value);
+                break;
+            case "seed":
+                builder.seed(Long.parseLong(value));
+                break;
+            case "files":
+                builder.files(Integer.parseInt(value));
+                break;
+            case "files-per-dir":
+                builder.filesPerDir(Integer.parseInt(value));
+                break;
+            case "lines":
+                builder.linesPerFile(Integer.parseInt(value));
+                break;
+            case "keyword-density":
+                builder.keywordDensity(Double.parseDouble(value));
+                break;
+            case "string-ratio":
+                builder.stringRatio(Double.parseDouble(value));
+                break;
+            case "number-ratio":
+                builder.numberRatio(Double.parseDouble(value));
+                break;
+            case "entity-ratio":
+                builder.entityRatio(Double.parseDouble(value));
+                break;
+            case "comment-ratio":
+                builder.commentRatio(Double.parseDouble(value));
+                break;
+            case "header":
+                builder.header(Boolean.parseBoolean(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown argument: '" + arg + "'");
+            }
+        }
+        final CorpusGenerator generator = builder.build();
+        final long start = System.currentTimeMillis();
+        final long chars = generator.writeTree(target);
+        System.out.println(generator + " => " + target + " (" + chars + " chars in " + (System.currentTimeMillis() - start) + " ms)");
+    }
+
+    /**
+     * Builder for the generator.
+     */
+    public static final class Builder {
+
+        private long seed = 1;
+
+        private int files = 100;
+
+        private int filesPerDir = 100;
+
+        private int linesPerFile = 50;
+
+        private double keywordDensity = 0.2;
+
+        private double stringRatio = 0.1;
+
+        private double numberRatio = 0.1;
+
+        private double entityRatio = 0.01;
+
+        private double commentRatio = 0.2;
+
+        private boolean header = true;
+
+        private List<String> keywords = DEFAULT_KEYWORDS;
+
+        /**
+         * Sets the seed of the random generator. Defaults to 1.
+         * 
+         * @param seed
+         *            Seed.
+         * 
+         * @return Builder.
+         */
+        public Builder seed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the number of files. Defaults to 100.
+         * 
+         * @param files
+         *            Number of files (1 or more).
+         * 
+         * @return Builder.
+         */
+        public Builder files(final int files) {
+            this.files = files;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of files in one directory. Defaults to 100.
+         * 
+         * @param filesPerDir
+         *            Files per directory (1 or more).
+         * 
+         * @return Builder.
+         */
+        public Builder filesPerDir(final int filesPerDir) {
+            this.filesPerDir = filesPerDir;
+            return this;
+        }
+
+        /**
+         * Sets the number of lines of every file. Defaults to 50.
+         * 
+         * @param linesPerFile
+         *            Lines (3 or more).
+         * 
+         * @return Builder.
+         */
+        public Builder linesPerFile(final int linesPerFile) {
+            this.linesPerFile = linesPerFile;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a statement token being a keyword. Defaults to 0.2.
+         * 
+         * @param keywordDensity
+         *            Probability (0 ... 1).
+         * 
+         * @return Builder.
+         */
+        public Builder keywordDensity(final double keywordDensity) {
+            this.keywordDensity = keywordDensity;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a statement token being a string. Defaults to 0.1.
+         * 
+         * @param stringRatio
+         *            Probability (0 ... 1).
+         * 
+         * @return Builder.
+         */
+        public Builder stringRatio(final double stringRatio) {
+            this.stringRatio = stringRatio;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a statement token being a number. Defaults to 0.1.
+         * 
+         * @param numberRatio
+         *            Probability (0 ... 1).
+         * 
+         * @return Builder.
+         */
+        public Builder numberRatio(final double numberRatio) {
+            this.numberRatio = numberRatio;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a statement token being an entity marker like "°°x2777°°". Defaults to 0.01.
+         * 
+         * @param entityRatio
+         *            Probability (0 ... 1).
+         * 
+         * @return Builder.
+         */
+        public Builder entityRatio(final double entityRatio) {
+            this.entityRatio = entityRatio;
+            return this;
+        }
+
+        /**
+         * Sets the probability of a line being a comment. Defaults to 0.2.
+         * 
+         * @param commentRatio
+         *            Probability (0 ... 1).
+         * 
+         * @return Builder.
+         */
+        public Builder commentRatio(final double commentRatio) {
+            this.commentRatio = commentRatio;
+            return this;
+        }
+
+        /**
+         * Sets if every file starts with an inline configuration like <code>@code2svg:{"width":800, "height": 300}</code>. Defaults
+         * to TRUE.
+         * 
+         * @param header
+         *            TRUE to create the header.
+         * 
+         * @return Builder.
+         */
+        public Builder header(final boolean header) {
+            this.header = header;
+            return this;
+        }
+
+        /**
+         * Sets the keywords to use. Defaults to {@link CorpusGenerator#DEFAULT_KEYWORDS}.
+         * 
+         * @param keywords
+         *            Keywords (at least one).
+         * 
+         * @return Builder.
+         */
+        public Builder keywords(@NotNull final List<String> keywords) {
+            Utils4J.checkNotNull("keywords", keywords);
+            this.keywords = keywords;
+            return this;
+        }
+
+        /**
+         * Creates the generator.
+         * 
+         * @return New instance.
+         */
+        public CorpusGenerator build() {
+            check("files", files, 1);
+            check("filesPerDir", filesPerDir, 1);
+            check("linesPerFile", linesPerFile, 3);
+            if (keywords.isEmpty()) {
+                throw new IllegalArgumentException("At least one keyword is required");
+            }
+            final double[] ratios = { keywordDensity, stringRatio, numberRatio, entityRatio, commentRatio };
+            for (final double ratio : ratios) {
+                if (ratio < 0 || ratio > 1) {
+                    throw new IllegalArgumentException("Ratios must be between 0 and 1, but was: " + ratio);
+                }
+            }
+            if (keywordDensity + stringRatio + numberRatio + entityRatio > 1) {
+                throw new IllegalArgumentException("The sum of keyword density, string, number and entity ratio must not exceed 1");
+            }
+            return new CorpusGenerator(this);
+        }
+
+        private static void check(final String name, final int value, final int min) {
+            if (value < min) {
+                throw new IllegalArgumentException("The argument '" + name + "' must be at least " + min + ", but was: " + value);
+            }
+        }
+
+    }
+
+}
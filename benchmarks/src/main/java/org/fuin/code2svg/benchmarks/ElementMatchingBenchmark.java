@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fuin.code2svg.core.Code2Svg;
+import org.fuin.code2svg.core.Code2SvgConfig;
+import org.fuin.code2svg.core.Element;
+import org.fuin.code2svg.core.ElementMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long a single element needs to find all its matches in a prepared (escaped) medium sized model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElementMatchingBenchmark {
+
+    @Param({ "whatever", "ml-comment", "sl-comment", "string", "number", "keyword" })
+    public String element;
+
+    private Element el;
+
+    private String text;
+
+    /**
+     * Selects the element and prepares the text.
+     */
+    @Setup
+    public void setup() {
+        final Code2SvgConfig config = BenchmarkFixtures.config(BenchmarkFixtures.CONFIG);
+        for (final Element candidate : config.getElements()) {
+            if (candidate.getName().equals(element)) {
+                el = candidate;
+            }
+        }
+        if (el == null) {
+            throw new IllegalArgumentException("Unknown element: " + element);
+        }
+        text = new Code2Svg().tokenize(config.compile(), BenchmarkFixtures.model("medium")).getText();
+    }
+
+    /**
+     * Finds all matches of the element.
+     * 
+     * @return Number of matches.
+     */
+    @Benchmark
+    public int find() {
+        final ElementMatcher matcher = el.matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+}
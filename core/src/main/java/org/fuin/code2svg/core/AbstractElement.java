@@ -114,4 +114,9 @@ public abstract class AbstractElement implements Element {
         return true;
     }
 
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [name=" + name + ", css=" + css + "]";
+    }
+
 }
@@ -28,7 +28,9 @@ import javax.xml.bind.annotation.XmlAccessorType;
 @XmlAccessorType(XmlAccessType.FIELD)
 public abstract class AbstractRegExprElement extends AbstractElement {
 
-    private transient Pattern compiledPattern;
+    private transient volatile Pattern compiledPattern;
+
+    private transient volatile ElementMatcherFactory matcherFactory;
 
     /**
      * Package visible default constructor for deserialization.
@@ -51,7 +53,24 @@ public abstract class AbstractRegExprElement extends AbstractElement {
 
     @Override
     public final ElementMatcher matcher(final String text) {
-        return new RegExprMatcher(getCompiledPattern().matcher(text));
+        ElementMatcherFactory factory = matcherFactory;
+        if (factory == null) {
+            // Elements are shared between threads - Compiling twice is harmless
+            factory = compile();
+            matcherFactory = factory;
+        }
+        return factory.matcher(text);
+    }
+
+    /**
+     * Compiles the current definition of the element. Elements of this package may replace the plain regular expression matcher
+     * with a faster one that finds the same matches.
+     * 
+     * @return Factory that creates matchers without compiling anything again.
+     */
+    ElementMatcherFactory compile() {
+        final Pattern pattern = Pattern.compile(getPattern());
+        return text -> new RegExprMatcher(pattern.matcher(text));
     }
 
     /**
@@ -60,10 +79,13 @@ public abstract class AbstractRegExprElement extends AbstractElement {
      * @return Pattern.
      */
     public final Pattern getCompiledPattern() {
-        if (compiledPattern == null) {
-            compiledPattern = Pattern.compile(getPattern());
+        Pattern pattern = compiledPattern;
+        if (pattern == null) {
+            // Elements are shared between threads - Compiling twice is harmless
+            pattern = Pattern.compile(getPattern());
+            compiledPattern = pattern;
         }
-        return compiledPattern;
+        return pattern;
     }
 
     /**
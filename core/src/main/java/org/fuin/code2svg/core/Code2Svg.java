@@ -19,15 +19,33 @@ package org.fuin.code2svg.core;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
 
 import org.apache.commons.text.StringEscapeUtils;
 import org.fuin.utils4j.Utils4J;
@@ -38,91 +56,229 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Converts a source file into an SVG file.
+ * Converts a source file into an SVG file. Files can also be written as gzip compressed SVGZ files (see {@link Builder}).
  */
 public final class Code2Svg {
 
     private static final Logger LOG = LoggerFactory.getLogger(Code2Svg.class);
 
-    private static String XML_PREFIX = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"no\" ?>";
+    static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
-    private static String DOC_TYPE = "<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.1//EN\" \"http://www.w3.org/Graphics/SVG/1.1/DTD/svg11.dtd\">";
+    /** Extension of uncompressed SVG files. */
+    public static final String SVG_EXTENSION = ".svg";
 
-    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    /** Extension of gzip compressed SVG files. */
+    public static final String SVGZ_EXTENSION = ".svgz";
 
-    private String tagAll(final String source, final List<Element> elements) {
-        final List<Pattern> patternList = createPatternList(elements);
-        String src = source;
-        for (final Element element : elements) {
-            final List<PieceOfText> tagSegments = createList(patternList, src);
-            src = tag(tagSegments, src, element);
-        }
-        return src;
+    /** Extension of the index file of a paginated source. */
+    public static final String INDEX_EXTENSION = ".html";
+
+    /** Name of the stylesheet shared by all SVG files of a target directory. */
+    public static final String SHARED_CSS_FILE = "code2svg.css";
+
+    @Nullable
+    private final TokenCache tokenCache;
+
+    @Nullable
+    private final Integer compressionLevel;
+
+    private final boolean sharedCss;
+
+    private final SvgRenderer renderer;
+
+    private final int pageLines;
+
+    /** Content of the shared stylesheets already written by this instance. */
+    private final Map<File, String> sharedCssWritten;
+
+    /**
+     * Default constructor without token cache.
+     */
+    public Code2Svg() {
+        this(null);
     }
 
-    private String tag(final List<PieceOfText> replacementst, final String source, final Element el) {
-        LOG.info("Tagging: {}", el.getName());
-        try {
-            final ElementMatcher m = el.matcher(source);
-            final StringBuffer sb = new StringBuffer();
-            while (m.find()) {
-                if (!anyOverlaps(replacementst, m.start(), m.end())) {
-                    String found = source.substring(m.start(), m.end());
-                    found = found.replace("$", "\\$"); // Avoid "No group with name" exception
-                    found = found.replace(LINE_SEPARATOR, el.getSvgEndTag() + LINE_SEPARATOR + el.getSvgStartTag());
-                    m.appendReplacement(sb, el.getSvgStartTag() + found + el.getSvgEndTag());
-                }
-            }
-            m.appendTail(sb);
-            return sb.toString();
-        } catch (final RuntimeException ex) {
-            LOG.error("Failed finding '{}' elements, source='{}'", el.getName(), source);
-            throw ex;
-        }
+    /**
+     * Constructor with token cache.
+     * 
+     * @param tokenCache
+     *            Cache for the positions of the elements or <code>null</code> to always search the elements.
+     */
+    public Code2Svg(@Nullable final TokenCache tokenCache) {
+        this(tokenCache, null, false, false, false, 0);
+    }
+
+    private Code2Svg(@Nullable final TokenCache tokenCache, @Nullable final Integer compressionLevel, final boolean sharedCss,
+            final boolean compact, final boolean autoSize, final int pageLines) {
+        super();
+        this.pageLines = pageLines;
+        this.tokenCache = tokenCache;
+        this.compressionLevel = compressionLevel;
+        this.sharedCss = sharedCss;
+        this.renderer = new SvgRenderer(compact, autoSize);
+        this.sharedCssWritten = new ConcurrentHashMap<>();
     }
 
-    private void writeToFile(final File file, final String src, final String title, final String description, final Code2SvgConfig config) {
+    /**
+     * Returns the compression level used for the files.
+     * 
+     * @return Level from 0 to 9 or -1 for the default level if SVGZ files are written, else <code>null</code>.
+     */
+    @Nullable
+    public Integer getCompressionLevel() {
+        return compressionLevel;
+    }
 
-        final List<Element> elements = config.getElements();
+    /**
+     * Returns the information if the SVG files reference a stylesheet in the target directory instead of containing the CSS.
+     * 
+     * @return TRUE if the shared stylesheet {@link #SHARED_CSS_FILE} is used.
+     */
+    public boolean isSharedCss() {
+        return sharedCss;
+    }
 
-        try (final Writer writer = new BufferedWriter(new FileWriter(file))) {
+    /**
+     * Returns the information if compact SVG markup is created.
+     * 
+     * @return TRUE if the text is rendered with {@link SvgRenderer#isCompact() compact} markup.
+     */
+    public boolean isCompact() {
+        return renderer.isCompact();
+    }
 
-            writer.write(XML_PREFIX + LINE_SEPARATOR);
-            writer.write(DOC_TYPE + LINE_SEPARATOR);
-            writer.write("<svg version=\"1.1\" " + widthHeighMarkup(config) + "xmlns=\"http://www.w3.org/2000/svg\">" + LINE_SEPARATOR);
-            writer.write("<title>" + title + "</title>" + LINE_SEPARATOR);
-            writer.write("<desc>" + description + "</desc>" + LINE_SEPARATOR);
-            writer.write("<style>" + LINE_SEPARATOR);
-            writer.write("<![CDATA[" + LINE_SEPARATOR);
-            writer.write("text { " + config.getTextCss() + " }" + LINE_SEPARATOR);
-            for (final Element element : elements) {
-                writer.write("." + element.getName() + " { " + element.getCSS() + " }" + LINE_SEPARATOR);
-            }
-            writer.write("]]>" + LINE_SEPARATOR);
-            writer.write("</style>" + LINE_SEPARATOR);
-            writer.write("<text xml:space=\"preserve\">" + LINE_SEPARATOR);
-            writer.write(src + LINE_SEPARATOR);
-            writer.write("</text>" + LINE_SEPARATOR);
-            writer.write("</svg>" + LINE_SEPARATOR);
+    /**
+     * Returns the information if the size of the images is calculated from the text.
+     * 
+     * @return TRUE if the configured width and height are replaced with the {@link SvgRenderer#isAutoSize() calculated} values.
+     */
+    public boolean isAutoSize() {
+        return renderer.isAutoSize();
+    }
 
-        } catch (final IOException ex) {
-            throw new RuntimeException("Error writing file: " + file, ex);
+    /**
+     * Returns the maximum number of lines per SVG file.
+     * 
+     * @return Number of lines per page or 0 if every source is converted into one SVG file.
+     */
+    public int getPageLines() {
+        return pageLines;
+    }
+
+    /**
+     * Returns the extension that is appended to the name of a source file to create the name of the target file. For paginated
+     * sources the target file is the index file that references the pages.
+     * 
+     * @return {@link #INDEX_EXTENSION} if the sources are paginated, {@link #SVGZ_EXTENSION} if the files are compressed, else
+     *         {@link #SVG_EXTENSION}.
+     */
+    @NotNull
+    public String getTargetExtension() {
+        if (pageLines > 0) {
+            return INDEX_EXTENSION;
         }
+        return getImageExtension();
     }
 
-    private String widthHeighMarkup(final Code2SvgConfig config) {
-        final StringBuilder sb = new StringBuilder();
-        if (config.getWidth() != null) {
-            sb.append("width=\"");
-            sb.append(config.getWidth());
-            sb.append("\" ");
+    private String getImageExtension() {
+        if (compressionLevel == null) {
+            return SVG_EXTENSION;
+        }
+        return SVGZ_EXTENSION;
+    }
+
+    /**
+     * Returns the SVG file of one page of a paginated source. The name is the name of the source file followed by the page
+     * number, like "Example.ddd.2.svg".
+     * 
+     * @param srcDir
+     *            Root directory of the source files. Used to build the relative path of the page.
+     * @param srcFile
+     *            Source file.
+     * @param targetDir
+     *            Target directory the relative path and page is created inside.
+     * @param page
+     *            Page number starting with 1.
+     * 
+     * @return Page file.
+     */
+    @NotNull
+    public File getPageFile(@NotNull final File srcDir, @NotNull final File srcFile, @NotNull final File targetDir,
+            final int page) {
+        return getTargetFile(srcDir, srcFile, targetDir, "." + page + getImageExtension());
+    }
+
+    /**
+     * Deletes the files created for a source. These are the target file and all pages.
+     * 
+     * @param srcDir
+     *            Root directory of the source files.
+     * @param srcFile
+     *            Source file that may no longer exist.
+     * @param targetDir
+     *            Target directory.
+     * 
+     * @return Deleted files.
+     */
+    @NotNull
+    public List<File> deleteTargetFiles(@NotNull final File srcDir, @NotNull final File srcFile, @NotNull final File targetDir) {
+        final List<File> deleted = new ArrayList<>();
+        delete(getTargetFile(srcDir, srcFile, targetDir, getTargetExtension()), deleted);
+        if (pageLines > 0) {
+            deletePages(srcDir, srcFile, targetDir, 1, deleted);
         }
-        if (config.getHeight() != null) {
-            sb.append("height=\"");
-            sb.append(config.getHeight());
-            sb.append("\" ");
+        return deleted;
+    }
+
+    private void deletePages(final File srcDir, final File srcFile, final File targetDir, final int firstPage,
+            final List<File> deleted) {
+        int page = firstPage;
+        while (delete(getPageFile(srcDir, srcFile, targetDir, page), deleted)) {
+            // Pages are numbered without gaps
+            page++;
+        }
+    }
+
+    private static boolean delete(final File file, final List<File> deleted) {
+        if (file.isFile() && file.delete()) {
+            LOG.info("DELETE {}", file);
+            deleted.add(file);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes the content to a temporary file and only replaces the target file if the content changed, so the modification time of
+     * an unchanged file is kept.
+     * 
+     * @return TRUE if the file was written, FALSE if it already had the same content.
+     */
+    private boolean writeToFile(final File file, final boolean compress, final Content content) {
+
+        File tmpFile = null;
+        try {
+            tmpFile = File.createTempFile("." + file.getName(), ".tmp", file.getParentFile());
+            OutputStream out = new FileOutputStream(tmpFile);
+            if (compress) {
+                out = new LevelGZIPOutputStream(out, compressionLevel);
+            }
+            try (final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                content.write(writer);
+            }
+            if (Code2SvgUtils.sameContent(tmpFile, file)) {
+                return false;
+            }
+            Code2SvgUtils.replace(tmpFile.toPath(), file.toPath());
+            tmpFile = null;
+            return true;
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error writing file: " + file, ex);
+        } finally {
+            if (tmpFile != null && !tmpFile.delete()) {
+                LOG.warn("Failed to delete temporary file: {}", tmpFile);
+            }
         }
-        return sb.toString();
     }
 
     /**
@@ -136,26 +292,166 @@ public final class Code2Svg {
      * @return Converted text.
      */
     public String convert(final Code2SvgConfig config, final String model) {
+        Utils4J.checkNotNull("config", config);
+        return convert(config.compile(), model);
+    }
+
+    /**
+     * Converts a source string using a compiled configuration.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param model
+     *            Source text to convert.
+     * 
+     * @return Converted text.
+     */
+    public String convert(@NotNull final CompiledConfig config, @NotNull final String model) {
+        return renderer.renderText(tokenizeWith(config, model));
+    }
+
+    /**
+     * Converts a source into a complete SVG document. The inline configuration of the source is applied. The document is written
+     * incrementally to the writer, so the SVG is never held in memory as a whole. The source is read completely before it is
+     * converted, so the memory used still grows with the size of the source.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param reader
+     *            Reader for the source text. It is read completely, but not closed.
+     * @param writer
+     *            Writer for the SVG document. It is flushed, but not closed.
+     */
+    public void convert(@NotNull final Code2SvgConfig config, @NotNull final Reader reader, @NotNull final Writer writer) {
+        Utils4J.checkNotNull("config", config);
+        convert(config.compile(), reader, writer);
+    }
+
+    /**
+     * Converts a source into a complete SVG document using a compiled configuration. The inline configuration of the source is
+     * applied. The document is written incrementally to the writer, so the SVG is never held in memory as a whole. The source is
+     * read completely before it is converted, so the memory used still grows with the size of the source.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param reader
+     *            Reader for the source text. It is read completely, but not closed.
+     * @param writer
+     *            Writer for the SVG document. It is flushed, but not closed.
+     */
+    public void convert(@NotNull final CompiledConfig config, @NotNull final Reader reader, @NotNull final Writer writer) {
+        Utils4J.checkNotNull("config", config);
+        Utils4J.checkNotNull("reader", reader);
+        Utils4J.checkNotNull("writer", writer);
+        try {
+            final String model = read(reader);
+            final CompiledConfig cfg = config.forModel(null, model);
+            renderer.render(tokenizeWith(cfg, model), writer);
+            writer.flush();
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error converting stream", ex);
+        }
+    }
+
+    /**
+     * Converts a source into a complete SVG document. Both streams use UTF-8 encoding. The inline configuration of the source is
+     * applied. The document is written incrementally to the output stream, so the SVG is never held in memory as a whole. The
+     * source is read completely before it is converted, so the memory used still grows with the size of the source.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param in
+     *            Input stream for the source text. It is read completely, but not closed.
+     * @param out
+     *            Output stream for the SVG document. It is flushed, but not closed.
+     */
+    public void convert(@NotNull final Code2SvgConfig config, @NotNull final InputStream in, @NotNull final OutputStream out) {
+        Utils4J.checkNotNull("config", config);
+        convert(config.compile(), in, out);
+    }
 
-        // Parse and remove inline configuration
-        final Matcher matcher = ModelConfigParser.PATTERN.matcher(model);
-        String src = matcher.replaceAll("");
+    /**
+     * Converts a source into a complete SVG document using a compiled configuration. Both streams use UTF-8 encoding. The inline
+     * configuration of the source is applied. The document is written incrementally to the output stream, so the SVG is never
+     * held in memory as a whole. The source is read completely before it is converted, so the memory used still grows with the
+     * size of the source.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param in
+     *            Input stream for the source text. It is read completely, but not closed.
+     * @param out
+     *            Output stream for the SVG document. It is flushed, but not closed.
+     */
+    public void convert(@NotNull final CompiledConfig config, @NotNull final InputStream in, @NotNull final OutputStream out) {
+        Utils4J.checkNotNull("in", in);
+        Utils4J.checkNotNull("out", out);
+        convert(config, new InputStreamReader(in, StandardCharsets.UTF_8),
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Locates the elements in a source. The inline configuration of the source is applied. The result can be rendered with the
+     * {@link SvgRenderer} or any other {@link TokenRenderer}.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param model
+     *            Source text.
+     * 
+     * @return Tokenized source.
+     */
+    @NotNull
+    public TokenizedSource tokenize(@NotNull final CompiledConfig config, @NotNull final String model) {
+        return tokenize(config, null, model);
+    }
+
+    /**
+     * Locates the elements in a source file. The file and inline configuration of the source are applied. The result can be
+     * rendered with the {@link SvgRenderer} or any other {@link TokenRenderer}.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param file
+     *            File the source was read from or <code>null</code> if the source is no file.
+     * @param model
+     *            Source text.
+     * 
+     * @return Tokenized source.
+     */
+    @NotNull
+    public TokenizedSource tokenize(@NotNull final CompiledConfig config, @Nullable final File file, @NotNull final String model) {
+        Utils4J.checkNotNull("config", config);
+        Utils4J.checkNotNull("model", model);
+        return tokenizeWith(config.forModel(file, model), model);
+    }
 
-        // Escape input
-        src = StringEscapeUtils.escapeXml10(src);
+    private TokenizedSource tokenizeWith(final CompiledConfig config, final String model) {
 
-        // Replace strings like "°°9986°°" with XML character entity like "&#9986;"
-        src = replaceUtf8Characters(src);
+        // Remove inline configuration, escape input and replace strings like "°°9986°°" with XML character entity like "&#9986;".
+        // The width of the lines is measured in the same pass.
+        final SourcePreparer prepared = SourcePreparer.prepare(model, LINE_SEPARATOR);
+        final String src = prepared.getText();
 
-        // Tag elements
-        src = tagAll(src, config.getElements());
+        // Locate the elements or take them from the cache
+        final TokenStream tokens;
+        if (tokenCache == null) {
+            tokens = config.getTokenizer().tokenize(src);
+        } else {
+            tokens = tokenCache.tokenize(config, src);
+        }
+        return new TokenizedSource(config, src, tokens, prepared.getLineColumns());
 
-        // Add line start markup
-        final String lineStart = "<tspan dy=\"1.2em\" x=\"10\"> </tspan>";
-        src = lineStart + src.replace(LINE_SEPARATOR, LINE_SEPARATOR + lineStart);
-        src = src.replace("\t", "    ");
+    }
 
-        return src;
+    private static String read(final Reader reader) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        final char[] buf = new char[8 * 1024];
+        int count;
+        while ((count = reader.read(buf)) != -1) {
+            sb.append(buf, 0, count);
+        }
+        return sb.toString();
     }
 
     /**
@@ -169,28 +465,157 @@ public final class Code2Svg {
      *            File to convert.
      * @param targetDir
      *            Target directory the relative path and SVG file is created inside.
+     * 
+     * @return TRUE if the SVG file was written, FALSE if it already existed with the same content and was left untouched.
+     */
+    public boolean convertFile(final Code2SvgConfig config, final File srcDir, final File srcFile, final File targetDir) {
+        Utils4J.checkNotNull("config", config);
+        return convertFile(config.compile(), srcDir, srcFile, targetDir);
+    }
+
+    /**
+     * Converts a source file using a compiled configuration.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param srcDir
+     *            Root directory of the source files. Used to build the relative path of the target SVG file.
+     * @param srcFile
+     *            File to convert.
+     * @param targetDir
+     *            Target directory the relative path and SVG file is created inside.
+     * 
+     * @return TRUE if the SVG file was written, FALSE if it already existed with the same content and was left untouched.
      */
-    public void convertFile(final Code2SvgConfig config, final File srcDir, final File srcFile, final File targetDir) {
+    public boolean convertFile(@NotNull final CompiledConfig config, @NotNull final File srcDir, @NotNull final File srcFile,
+            @NotNull final File targetDir) {
 
         LOG.info("READ {}", srcFile);
 
-        final String path = Utils4J.getRelativePath(srcDir, srcFile.getParentFile());
-        final File dir = new File(targetDir, path);
+        final File targetFile = getTargetFile(srcDir, srcFile, targetDir, getTargetExtension());
+        final File dir = targetFile.getParentFile();
         if (!dir.exists()) {
             dir.mkdirs();
         }
-        final File targetFile = new File(dir, srcFile.getName() + ".svg");
         final String model = Utils4J.readAsString(url(srcFile), "utf-8", 1024);
-        final Code2SvgConfig cfg = new ModelConfigParser(config).parse(srcFile, model);
+        final CompiledConfig cfg = config.forModel(srcFile, model);
+
+        final String title = srcFile.getName();
+        final String description = "Converted from " + srcFile.getName() + " to " + targetFile.getName();
+
+        final String stylesheet = stylesheet(config, cfg, targetDir, targetFile);
+        if (pageLines > 0) {
+            return convertPages(srcDir, srcFile, targetDir, targetFile, tokenizeWith(cfg, model), stylesheet);
+        }
+        if (writeToFile(targetFile, compressionLevel != null,
+                writer -> renderer.render(tokenizeWith(cfg, model), title, description, stylesheet, writer))) {
+            LOG.info("WRITE {}", targetFile);
+            return true;
+        }
+        LOG.info("UNCHANGED {}", targetFile);
+        return false;
+
+    }
+
+    /**
+     * Writes the pages of a source in parallel, deletes pages left over from a longer version of the source and writes the index.
+     * 
+     * @return TRUE if any file was written or deleted.
+     */
+    private boolean convertPages(final File srcDir, final File srcFile, final File targetDir, final File indexFile,
+            final TokenizedSource source, @Nullable final String stylesheet) {
+
+        final List<TokenizedSource> pages = source.split(pageLines);
+        final File[] pageFiles = new File[pages.size()];
+        for (int i = 0; i < pageFiles.length; i++) {
+            pageFiles[i] = getPageFile(srcDir, srcFile, targetDir, i + 1);
+        }
+        final String title = srcFile.getName();
+        final long written = IntStream.range(0, pages.size()).parallel().filter(i -> {
+            final String description = "Converted from " + srcFile.getName() + " to " + pageFiles[i].getName() + " (page "
+                    + (i + 1) + " of " + pages.size() + ")";
+            if (writeToFile(pageFiles[i], compressionLevel != null,
+                    writer -> renderer.render(pageHeight(pages.get(i)), title, description, stylesheet, writer))) {
+                LOG.info("WRITE {}", pageFiles[i]);
+                return true;
+            }
+            LOG.info("UNCHANGED {}", pageFiles[i]);
+            return false;
+        }).count();
+
+        final List<File> deleted = new ArrayList<>();
+        deletePages(srcDir, srcFile, targetDir, pages.size() + 1, deleted);
+
+        if (writeToFile(indexFile, false, writer -> writeIndex(title, pageFiles, stylesheet, writer))) {
+            LOG.info("WRITE {}", indexFile);
+            return true;
+        }
+        LOG.info("UNCHANGED {}", indexFile);
+        return written > 0 || !deleted.isEmpty();
 
-        String src = convert(cfg, model);
-        String title = srcFile.getName();
-        String description = "Converted from " + srcFile.getName() + " to " + targetFile.getName();
+    }
 
-        writeToFile(targetFile, src, title, description, cfg);
+    /**
+     * Returns the page with the part of the configured height its lines take of a full page. As every line has the same height,
+     * the configured height is the height of a full page and the last page is not filled up with empty space.
+     */
+    private TokenizedSource pageHeight(final TokenizedSource page) {
+        final Integer height = page.getConfig().getHeight();
+        if (height == null || page.getLines() >= pageLines) {
+            return page;
+        }
+        final int lines = Math.max(1, page.getLines());
+        return page.withConfig(page.getConfig().withHeight((int) Math.ceil((double) height * lines / pageLines)));
+    }
 
-        LOG.info("WRITE {}", targetFile);
+    /**
+     * Writes an HTML page that shows all pages of a source one below the other. Pages that reference a shared stylesheet are
+     * embedded as objects, because images do not load external stylesheets.
+     */
+    private static void writeIndex(final String title, final File[] pageFiles, @Nullable final String stylesheet,
+            final Writer writer) throws IOException {
+        writer.write("<!DOCTYPE html>" + LINE_SEPARATOR);
+        writer.write("<html>" + LINE_SEPARATOR);
+        writer.write("<head>" + LINE_SEPARATOR);
+        writer.write("<meta charset=\"utf-8\">" + LINE_SEPARATOR);
+        writer.write("<title>" + StringEscapeUtils.escapeHtml4(title) + "</title>" + LINE_SEPARATOR);
+        writer.write("</head>" + LINE_SEPARATOR);
+        writer.write("<body>" + LINE_SEPARATOR);
+        for (int i = 0; i < pageFiles.length; i++) {
+            final String href = StringEscapeUtils.escapeHtml4(pageFiles[i].getName());
+            final String alt = StringEscapeUtils.escapeHtml4(title + " page " + (i + 1) + " of " + pageFiles.length);
+            if (stylesheet == null) {
+                writer.write("<div><img src=\"" + href + "\" alt=\"" + alt + "\" loading=\"lazy\"></div>" + LINE_SEPARATOR);
+            } else {
+                writer.write("<div><object type=\"image/svg+xml\" data=\"" + href + "\">" + alt + "</object></div>"
+                        + LINE_SEPARATOR);
+            }
+        }
+        writer.write("</body>" + LINE_SEPARATOR);
+        writer.write("</html>" + LINE_SEPARATOR);
+    }
 
+    /**
+     * Returns the reference to the shared stylesheet and writes it if necessary. If the inline configuration of the source
+     * overrides the text CSS, the CSS is included in the SVG file instead.
+     * 
+     * @return Relative URL of the stylesheet or <code>null</code> if the CSS is included in the SVG file.
+     */
+    @Nullable
+    private String stylesheet(final CompiledConfig config, final CompiledConfig cfg, final File targetDir, final File targetFile) {
+        if (!sharedCss || !cfg.getTextCss().equals(config.getTextCss())) {
+            return null;
+        }
+        final File cssFile = new File(targetDir, SHARED_CSS_FILE);
+        final String css = SvgRenderer.css(config);
+        if (!css.equals(sharedCssWritten.get(cssFile)) || !cssFile.isFile()) {
+            if (writeToFile(cssFile, false, writer -> writer.write(css))) {
+                LOG.info("WRITE {}", cssFile);
+            }
+            sharedCssWritten.put(cssFile, css);
+        }
+        final Path dir = targetFile.getParentFile().getAbsoluteFile().toPath().normalize();
+        return dir.relativize(cssFile.getAbsoluteFile().toPath().normalize()).toString().replace(File.separatorChar, '/');
     }
 
     /**
@@ -204,6 +629,21 @@ public final class Code2Svg {
      *            Target directory.
      */
     public void convertDir(final Code2SvgConfig config, final File srcDir, final File targetDir) {
+        Utils4J.checkNotNull("config", config);
+        convertDir(config.compile(), srcDir, targetDir);
+    }
+
+    /**
+     * Convert all files in a directory using a compiled configuration.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param srcDir
+     *            Directory with source files.
+     * @param targetDir
+     *            Target directory.
+     */
+    public void convertDir(@NotNull final CompiledConfig config, @NotNull final File srcDir, @NotNull final File targetDir) {
         new FileProcessor(new FileHandler() {
             @Override
             public FileHandlerResult handleFile(final File file) {
@@ -215,6 +655,173 @@ public final class Code2Svg {
         }).process(srcDir);
     }
 
+    /**
+     * Converts all files in a directory using several threads. A file that cannot be converted does not stop the conversion of
+     * the other files. The resulting files are the same as with {@link #convertDir(Code2SvgConfig, File, File)}.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param srcDir
+     *            Directory with source files.
+     * @param targetDir
+     *            Target directory.
+     * @param parallelism
+     *            Number of files to convert at the same time. A value of 1 converts the files one after the other on the calling
+     *            thread.
+     * 
+     * @return Converted and failed files.
+     */
+    public ConvertDirResult convertDir(@NotNull final Code2SvgConfig config, @NotNull final File srcDir,
+            @NotNull final File targetDir, final int parallelism) {
+        Utils4J.checkNotNull("config", config);
+        return convertDir(config.compile(), srcDir, targetDir, parallelism);
+    }
+
+    /**
+     * Converts all files in a directory using several threads and a compiled configuration. A file that cannot be converted does
+     * not stop the conversion of the other files.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param srcDir
+     *            Directory with source files.
+     * @param targetDir
+     *            Target directory.
+     * @param parallelism
+     *            Number of files to convert at the same time. A value of 1 converts the files one after the other on the calling
+     *            thread.
+     * 
+     * @return Converted and failed files.
+     */
+    public ConvertDirResult convertDir(@NotNull final CompiledConfig config, @NotNull final File srcDir,
+            @NotNull final File targetDir, final int parallelism) {
+        return convertDir(config, srcDir, targetDir, parallelism, file -> true);
+    }
+
+    /**
+     * Converts selected files in a directory using several threads and a compiled configuration. A file that cannot be converted
+     * does not stop the conversion of the other files.
+     * 
+     * @param config
+     *            Configuration to use.
+     * @param srcDir
+     *            Directory with source files.
+     * @param targetDir
+     *            Target directory.
+     * @param parallelism
+     *            Number of files to convert at the same time. A value of 1 converts the files one after the other on the calling
+     *            thread.
+     * @param filter
+     *            Decides if a source file with the configured file extension is converted. It is called on the calling thread
+     *            before any file is converted. Files not accepted are reported as skipped.
+     * 
+     * @return Converted, skipped and failed files.
+     */
+    public ConvertDirResult convertDir(@NotNull final CompiledConfig config, @NotNull final File srcDir,
+            @NotNull final File targetDir, final int parallelism, @NotNull final Predicate<File> filter) {
+        Utils4J.checkNotNull("config", config);
+        Utils4J.checkNotNull("filter", filter);
+        Utils4J.checkNotNull("srcDir", srcDir);
+        Utils4J.checkNotNull("targetDir", targetDir);
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The argument 'parallelism' must be greater than 0, but was: " + parallelism);
+        }
+
+        final ConvertDirResult result = new ConvertDirResult();
+        final List<File> files = new ArrayList<>();
+        new FileProcessor(new FileHandler() {
+            @Override
+            public FileHandlerResult handleFile(final File file) {
+                if (file.getName().endsWith(config.getFileExtension())) {
+                    if (filter.test(file)) {
+                        files.add(file);
+                    } else {
+                        result.addSkipped(file);
+                    }
+                }
+                return FileHandlerResult.CONTINUE;
+            }
+        }).process(srcDir);
+
+        if (parallelism == 1 || files.size() < 2) {
+            for (final File file : files) {
+                convertFile(config, srcDir, file, targetDir, result);
+            }
+            return result;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, files.size()));
+        try {
+            final List<Future<?>> futures = new ArrayList<>(files.size());
+            for (final File file : files) {
+                futures.add(executor.submit(() -> convertFile(config, srcDir, file, targetDir, result)));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while converting directory: " + srcDir, ex);
+        } catch (final ExecutionException ex) {
+            // Runtime exceptions are reported as failures, so only errors end up here
+            final Throwable cause = ex.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+
+    }
+
+    private void convertFile(final CompiledConfig config, final File srcDir, final File srcFile, final File targetDir,
+            final ConvertDirResult result) {
+        try {
+            result.addConverted(srcFile, convertFile(config, srcDir, srcFile, targetDir));
+        } catch (final RuntimeException ex) {
+            LOG.error("Failed to convert: " + srcFile, ex);
+            result.addFailure(srcFile, ex);
+        }
+    }
+
+    /**
+     * Returns the SVG file a source file is converted to.
+     * 
+     * @param srcDir
+     *            Root directory of the source files. Used to build the relative path of the target SVG file.
+     * @param srcFile
+     *            File to convert.
+     * @param targetDir
+     *            Target directory the relative path and SVG file is created inside.
+     * 
+     * @return Target file.
+     */
+    public static File getTargetFile(@NotNull final File srcDir, @NotNull final File srcFile, @NotNull final File targetDir) {
+        return getTargetFile(srcDir, srcFile, targetDir, SVG_EXTENSION);
+    }
+
+    /**
+     * Returns the file a source file is converted to.
+     * 
+     * @param srcDir
+     *            Root directory of the source files. Used to build the relative path of the target file.
+     * @param srcFile
+     *            File to convert.
+     * @param targetDir
+     *            Target directory the relative path and target file is created inside.
+     * @param extension
+     *            Extension to append to the name of the source file like {@link #SVG_EXTENSION} or {@link #SVGZ_EXTENSION}.
+     * 
+     * @return Target file.
+     */
+    public static File getTargetFile(@NotNull final File srcDir, @NotNull final File srcFile, @NotNull final File targetDir,
+            @NotNull final String extension) {
+        final String path = Utils4J.getRelativePath(srcDir, srcFile.getParentFile());
+        return new File(new File(targetDir, path), srcFile.getName() + extension);
+    }
+
     private static URL url(File file) {
         try {
             return file.toURI().toURL();
@@ -223,45 +830,152 @@ public final class Code2Svg {
         }
     }
 
-    private static boolean anyOverlaps(final List<PieceOfText> replacements, final int start, final int end) {
-        for (final PieceOfText replacement : replacements) {
-            if (replacement.overlaps(start, end)) {
-                return true;
-            }
+    /**
+     * Writes the content of a file.
+     */
+    private interface Content {
+
+        void write(Writer writer) throws IOException;
+
+    }
+
+    /**
+     * GZIP output stream with a configurable compression level.
+     */
+    private static final class LevelGZIPOutputStream extends GZIPOutputStream {
+
+        LevelGZIPOutputStream(final OutputStream out, final int level) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(level);
         }
-        return false;
+
     }
 
-    private static List<PieceOfText> createList(final List<Pattern> patternList, final String src) {
-        final List<PieceOfText> list = new ArrayList<>();
-        for (final Pattern pattern : patternList) {
-            final Matcher m = pattern.matcher(src);
-            while (m.find()) {
-                final String found = src.substring(m.start(), m.end());
-                list.add(new PieceOfText(found, m.start(), m.end()));
+    /**
+     * Builder for a converter.
+     */
+    public static final class Builder {
+
+        private TokenCache tokenCache;
+
+        private Integer compressionLevel;
+
+        private boolean sharedCss;
+
+        private boolean compact;
+
+        private boolean autoSize;
+
+        private int pageLines;
+
+        /**
+         * Sets the token cache.
+         * 
+         * @param tokenCache
+         *            Cache for the positions of the elements or <code>null</code> to always search the elements.
+         * 
+         * @return Builder.
+         */
+        public final Builder tokenCache(@Nullable final TokenCache tokenCache) {
+            this.tokenCache = tokenCache;
+            return this;
+        }
+
+        /**
+         * Writes gzip compressed SVGZ files instead of SVG files.
+         * 
+         * @param compressionLevel
+         *            Level from 0 (no compression) to 9 (best compression) or -1 for the default level.
+         * 
+         * @return Builder.
+         */
+        public final Builder svgz(final int compressionLevel) {
+            if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException(
+                        "The argument 'compressionLevel' must be between -1 and 9, but was: " + compressionLevel);
             }
+            this.compressionLevel = compressionLevel;
+            return this;
         }
-        return list;
-    }
 
-    private static List<Pattern> createPatternList(final List<Element> elements) {
-        final List<Pattern> list = new ArrayList<>();
-        for (final Element element : elements) {
-            list.add(Pattern.compile(Pattern.quote(element.getSvgStartTag()) + ".*" + Pattern.quote(element.getSvgEndTag())));
+        /**
+         * Writes uncompressed SVG files. This is the default.
+         * 
+         * @return Builder.
+         */
+        public final Builder svg() {
+            this.compressionLevel = null;
+            return this;
         }
-        return list;
-    }
 
-    private static String replaceUtf8Characters(final String src) {
-        final Pattern pattern = Pattern.compile("°°\\d+?°°|°°x[0-9A-Fa-f]+?°°");
-        final Matcher m = pattern.matcher(src);
-        final StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            final String code = src.substring(m.start() + 2, m.end() - 2);
-            m.appendReplacement(sb, "&#" + code + ";");
+        /**
+         * Writes one stylesheet {@link Code2Svg#SHARED_CSS_FILE} into the target directory that is referenced by all SVG files
+         * instead of including the CSS in every file. Files whose inline configuration overrides the text CSS still include it.
+         * 
+         * @param sharedCss
+         *            TRUE to use a shared stylesheet, FALSE to include the CSS in every file (default).
+         * 
+         * @return Builder.
+         */
+        public final Builder sharedCss(final boolean sharedCss) {
+            this.sharedCss = sharedCss;
+            return this;
+        }
+
+        /**
+         * Creates compact SVG markup with the same visual result and less markup. See {@link SvgRenderer} for details.
+         * 
+         * @param compact
+         *            TRUE for compact markup, FALSE for the standard markup (default).
+         * 
+         * @return Builder.
+         */
+        public final Builder compact(final boolean compact) {
+            this.compact = compact;
+            return this;
+        }
+
+        /**
+         * Calculates width, height and view box of every image from the number of lines and the width of the longest line instead
+         * of using the configured values. See {@link SvgRenderer} for details.
+         * 
+         * @param autoSize
+         *            TRUE to calculate the size, FALSE to use the configured width and height (default).
+         * 
+         * @return Builder.
+         */
+        public final Builder autoSize(final boolean autoSize) {
+            this.autoSize = autoSize;
+            return this;
+        }
+
+        /**
+         * Splits every source file into SVG pages with a maximum number of lines. The pages are rendered in parallel and named
+         * like the source file followed by the page number, for example "Example.ddd.1.svg". An HTML index file named like the
+         * source file with the extension {@link Code2Svg#INDEX_EXTENSION} shows the pages one below the other. As every line is
+         * 1.2em high, the number of lines also defines the height of a page.
+         * 
+         * @param pageLines
+         *            Maximum number of lines per page or 0 to convert every source file into one SVG file (default).
+         * 
+         * @return Builder.
+         */
+        public final Builder pageLines(final int pageLines) {
+            if (pageLines < 0) {
+                throw new IllegalArgumentException("The argument 'pageLines' must not be negative, but was: " + pageLines);
+            }
+            this.pageLines = pageLines;
+            return this;
+        }
+
+        /**
+         * Returns the converter.
+         * 
+         * @return New instance.
+         */
+        public Code2Svg build() {
+            return new Code2Svg(tokenCache, compressionLevel, sharedCss, compact, autoSize, pageLines);
         }
-        m.appendTail(sb);
-        return sb.toString();
 
     }
 
@@ -21,7 +21,6 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
 
 import javax.annotation.Nullable;
 import javax.validation.Valid;
@@ -35,6 +34,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 @XmlRootElement(name = "code2svg")
@@ -68,6 +68,14 @@ public class Code2SvgConfig {
     @XmlAnyElement(lax = true)
     private List<Element> elements;
 
+    /** Created on first use and reset if a file configuration is added. */
+    @XmlTransient
+    private volatile FileConfigResolver fileConfigResolver;
+
+    /** Created on first use and reset if an element or a file configuration is added. */
+    @XmlTransient
+    private volatile CompiledConfig compiledConfig;
+
     /**
      * Package visible default constructor for deserialization.
      */
@@ -139,26 +147,30 @@ public class Code2SvgConfig {
             fileConfigs = new ArrayList<>();
         }
         fileConfigs.add(fileConfig);
+        fileConfigResolver = null;
+        compiledConfig = null;
     }
 
     /**
-     * Returns the file configuration to use for a given file.
+     * Returns the file configuration to use for a given file. This is the first file configuration whose name matches the
+     * absolute path of the file. Literal names are found without executing the regular expressions.
      * 
      * @param file
-     *            File to find a configuration for.
+     *            File to find a configuration for or <code>null</code> if the source is no file.
      * 
      * @return File configuration or <code>null</code> if no matching was found.
      */
     @Nullable
-    public final FileConfig findFor(final File file) {
-        final List<FileConfig> list = getFileConfigs();
-        for (final FileConfig config : list) {
-            final Matcher matcher = config.getCompiledName().matcher(file.getAbsolutePath());
-            if (matcher.matches()) {
-                return config;
-            }
+    public final FileConfig findFor(@Nullable final File file) {
+        if (file == null) {
+            return null;
         }
-        return null;
+        FileConfigResolver resolver = fileConfigResolver;
+        if (resolver == null) {
+            resolver = new FileConfigResolver(getFileConfigs());
+            fileConfigResolver = resolver;
+        }
+        return resolver.findFor(file);
     }
 
     /**
@@ -182,6 +194,37 @@ public class Code2SvgConfig {
             elements = new ArrayList<>();
         }
         elements.add(element);
+        compiledConfig = null;
+    }
+
+    /**
+     * Returns an immutable snapshot of this configuration that is ready for converting. The snapshot is created on first use and
+     * returned again until an element or a file configuration is added, so converting many files with this configuration compiles
+     * the elements only once. Like the patterns an element compiles on first use, the snapshot does not see changes made inside
+     * an element afterwards.
+     * 
+     * @return Compiled configuration.
+     */
+    @NotNull
+    public final CompiledConfig compile() {
+        CompiledConfig compiled = compiledConfig;
+        if (compiled == null) {
+            compiled = new CompiledConfig(this);
+            compiledConfig = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * Returns a hash over all values and element definitions that affect the output. Two configurations with the same fingerprint
+     * create the same SVG for the same source. The fingerprint is calculated on every call, as the configuration may change.
+     * 
+     * @return Hex encoded SHA-256 hash.
+     */
+    @NotNull
+    public final String getFingerprint() {
+        return ConfigFingerprint.create(fileExtension, width, height, textCss, getFileConfigs(),
+                elements == null ? Collections.emptyList() : elements);
     }
 
     public void afterUnmarshal(final Unmarshaller unmarshaller, final Object parent) {
@@ -192,8 +235,8 @@ public class Code2SvgConfig {
 
     @Override
     public final String toString() {
-        return "Code2SvgConfig [fileExtension=" + fileExtension + ", width=" + width + ", height=" + height + ", elements=" + elements
-                + "]";
+        return "Code2SvgConfig [fileExtension=" + fileExtension + ", width=" + width + ", height=" + height + ", textCss=" + textCss
+                + ", fileConfigs=" + fileConfigs + ", elements=" + elements + "]";
     }
 
     /**
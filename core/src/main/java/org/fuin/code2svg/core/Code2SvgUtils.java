@@ -17,6 +17,19 @@
  */
 package org.fuin.code2svg.core;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.validation.constraints.NotNull;
+
 /**
  * Utility class for the package.
  */
@@ -30,4 +43,90 @@ public final class Code2SvgUtils {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Returns the SHA-256 hash of one or more byte arrays. The arrays are hashed one after the other as if they were a single
+     * array.
+     * 
+     * @param data
+     *            Data to hash.
+     * 
+     * @return Lower case hex encoded hash.
+     */
+    public static String sha256(@NotNull final byte[]... data) {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            // Every JVM supports SHA-256
+            throw new IllegalStateException(ex);
+        }
+        for (final byte[] part : data) {
+            md.update(part);
+        }
+        final byte[] digest = md.digest();
+        final StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (final byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Moves a file to its final name, replacing an existing file. The move is atomic if the file system supports it, so readers
+     * either see the old or the new file, but never a partial one.
+     * 
+     * @param from
+     *            File to move.
+     * @param to
+     *            Final name.
+     * 
+     * @throws IOException
+     *             Error moving the file.
+     */
+    static void replace(@NotNull final Path from, @NotNull final Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Determines if two files have the same content. The files are compared block by block and the comparison stops at the first
+     * difference.
+     * 
+     * @param file1
+     *            First file.
+     * @param file2
+     *            Second file.
+     * 
+     * @return TRUE if both files exist and contain the same bytes.
+     * 
+     * @throws IOException
+     *             Error reading one of the files.
+     */
+    static boolean sameContent(@NotNull final File file1, @NotNull final File file2) throws IOException {
+        if (!file1.isFile() || !file2.isFile() || file1.length() != file2.length()) {
+            return false;
+        }
+        try (final InputStream in1 = new BufferedInputStream(Files.newInputStream(file1.toPath()));
+                final InputStream in2 = new BufferedInputStream(Files.newInputStream(file2.toPath()))) {
+            final byte[] buf1 = new byte[8 * 1024];
+            final byte[] buf2 = new byte[buf1.length];
+            int count;
+            while ((count = in1.readNBytes(buf1, 0, buf1.length)) > 0) {
+                if (in2.readNBytes(buf2, 0, count) != count) {
+                    return false;
+                }
+                for (int i = 0; i < count; i++) {
+                    if (buf1[i] != buf2[i]) {
+                        return false;
+                    }
+                }
+            }
+            return in2.read() == -1;
+        }
+    }
+
 }
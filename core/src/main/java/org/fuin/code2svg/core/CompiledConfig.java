@@ -0,0 +1,302 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.fuin.code2svg.core.ModelConfigParser.ImageSettings;
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Immutable snapshot of a {@link Code2SvgConfig} with everything that is needed for a conversion built in advance: The element
+ * matchers, file name patterns, CSS and SVG tags. An instance can be shared by any number of concurrent conversions and reused
+ * for any number of files. The regular expressions and keyword trees are compiled from the element definitions when the snapshot
+ * is created, so later changes to the original configuration or its elements have no effect on the snapshot.
+ */
+public final class CompiledConfig {
+
+    @Nullable
+    private final String fileExtension;
+
+    @Nullable
+    private final Integer width;
+
+    @Nullable
+    private final Integer height;
+
+    @NotNull
+    private final String textCss;
+
+    @NotNull
+    private final List<Element> elements;
+
+    @NotNull
+    private final List<FileConfig> fileConfigs;
+
+    @NotNull
+    private final FileConfigResolver fileConfigResolver;
+
+    @NotNull
+    private final String elementCss;
+
+    @NotNull
+    private final String[] elementRules;
+
+    @NotNull
+    private final Tokenizer tokenizer;
+
+    @NotNull
+    private final String fingerprint;
+
+    @NotNull
+    private final String elementsFingerprint;
+
+    /**
+     * Constructor with configuration to compile.
+     * 
+     * @param config
+     *            Configuration to create a snapshot of.
+     */
+    public CompiledConfig(@NotNull final Code2SvgConfig config) {
+        super();
+        Utils4J.checkNotNull("config", config);
+        this.fileExtension = config.getFileExtension();
+        this.width = config.getWidth();
+        this.height = config.getHeight();
+        this.textCss = config.getTextCss();
+        this.elements = Collections.unmodifiableList(new ArrayList<>(config.getElements()));
+        this.fileConfigs = Collections.unmodifiableList(new ArrayList<>(config.getFileConfigs()));
+        this.fileConfigResolver = new FileConfigResolver(fileConfigs);
+        this.elementRules = new String[elements.size()];
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < elementRules.length; i++) {
+            final Element element = elements.get(i);
+            elementRules[i] = "." + element.getName() + " { " + element.getCSS() + " }" + Code2Svg.LINE_SEPARATOR;
+            sb.append(elementRules[i]);
+        }
+        this.elementCss = sb.toString();
+        this.tokenizer = new Tokenizer(elements, Code2Svg.LINE_SEPARATOR);
+        this.fingerprint = ConfigFingerprint.create(fileExtension, width, height, textCss, fileConfigs, elements);
+        this.elementsFingerprint = ConfigFingerprint.create(elements);
+    }
+
+    /**
+     * Constructor for a copy with other image settings.
+     */
+    private CompiledConfig(final CompiledConfig other, final Integer width, final Integer height, final String textCss) {
+        super();
+        this.fileExtension = other.fileExtension;
+        this.width = width;
+        this.height = height;
+        this.textCss = textCss;
+        this.elements = other.elements;
+        this.fileConfigs = other.fileConfigs;
+        this.fileConfigResolver = other.fileConfigResolver;
+        this.elementCss = other.elementCss;
+        this.elementRules = other.elementRules;
+        this.tokenizer = other.tokenizer;
+        this.fingerprint = ConfigFingerprint.create(fileExtension, width, height, textCss, fileConfigs, elements);
+        this.elementsFingerprint = other.elementsFingerprint;
+    }
+
+    /**
+     * Returns the file extension.
+     * 
+     * @return Code file extension.
+     */
+    @Nullable
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Returns the width for created SVG images.
+     * 
+     * @return Width.
+     */
+    @Nullable
+    public Integer getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height for created SVG images.
+     * 
+     * @return Height.
+     */
+    @Nullable
+    public Integer getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the CSS for the text.
+     * 
+     * @return CSS like "font-size: 11pt; font-family: monospace"
+     */
+    @NotNull
+    public String getTextCss() {
+        return textCss;
+    }
+
+    /**
+     * Returns a list of all elements.
+     * 
+     * @return Immutable list.
+     */
+    @NotNull
+    public List<Element> getElements() {
+        return elements;
+    }
+
+    /**
+     * Returns a list of all file configurations.
+     * 
+     * @return Immutable list.
+     */
+    @NotNull
+    public List<FileConfig> getFileConfigs() {
+        return fileConfigs;
+    }
+
+    /**
+     * Returns the file configuration to use for a given file. This is the first file configuration whose name matches the
+     * absolute path of the file. Literal names are found without executing the regular expressions.
+     * 
+     * @param file
+     *            File to find a configuration for or <code>null</code> if the source is no file.
+     * 
+     * @return File configuration or <code>null</code> if no matching was found.
+     */
+    @Nullable
+    public FileConfig findFor(@Nullable final File file) {
+        return fileConfigResolver.findFor(file);
+    }
+
+    /**
+     * Returns the configuration to use for a source. Values of the matching file configuration and the inline configuration
+     * ({@link ModelConfigParser#CODE2SVG_KEY}) of the source are applied. The compiled elements are shared with this instance.
+     * 
+     * @param file
+     *            File the model was read from or <code>null</code> if the source was no file.
+     * @param model
+     *            Source text.
+     * 
+     * @return This instance if nothing was changed or a copy with the changed values.
+     */
+    @NotNull
+    public CompiledConfig forModel(@Nullable final File file, @NotNull final String model) {
+        Utils4J.checkNotNull("model", model);
+        final ImageSettings settings = new ImageSettings(width, height, textCss).apply(findFor(file), model);
+        if (Objects.equals(settings.getWidth(), width) && Objects.equals(settings.getHeight(), height)
+                && Objects.equals(settings.getTextCss(), textCss)) {
+            return this;
+        }
+        return new CompiledConfig(this, settings.getWidth(), settings.getHeight(), settings.getTextCss());
+    }
+
+    /**
+     * Returns the configuration with another height. The compiled elements are shared with this instance.
+     * 
+     * @param height
+     *            Height for created SVG images.
+     * 
+     * @return This instance if the height is the same or a copy with the other height.
+     */
+    @NotNull
+    CompiledConfig withHeight(@Nullable final Integer height) {
+        if (Objects.equals(height, this.height)) {
+            return this;
+        }
+        return new CompiledConfig(this, width, height, textCss);
+    }
+
+    /**
+     * Returns a hash over all values and element definitions that affect the output. It is the same as the fingerprint of a
+     * {@link Code2SvgConfig} with equal values, so it can be used to find out if an earlier output is still valid.
+     * 
+     * @return Hex encoded SHA-256 hash.
+     */
+    @NotNull
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns a hash over the element definitions only. It is the same for all copies returned by
+     * {@link #forModel(File, String)}, as they share the elements.
+     * 
+     * @return Hex encoded SHA-256 hash.
+     */
+    @NotNull
+    String getElementsFingerprint() {
+        return elementsFingerprint;
+    }
+
+    /**
+     * Returns the CSS rules for all elements.
+     * 
+     * @return One line per element like ".keyword { fill: blue }".
+     */
+    String getElementCss() {
+        return elementCss;
+    }
+
+    /**
+     * Returns the CSS rules for some of the elements.
+     * 
+     * @param used
+     *            Indexes of the elements to include.
+     * 
+     * @return One rule per line in the order of the elements.
+     */
+    String getElementCss(@NotNull final BitSet used) {
+        if (used.cardinality() == elementRules.length) {
+            return elementCss;
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (int i = used.nextSetBit(0); i >= 0 && i < elementRules.length; i = used.nextSetBit(i + 1)) {
+            sb.append(elementRules[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the tokenizer for the elements.
+     * 
+     * @return Tokenizer that can be used concurrently.
+     */
+    Tokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledConfig [fileExtension=" + fileExtension + ", width=" + width + ", height=" + height + ", textCss=" + textCss
+                + ", fileConfigs=" + fileConfigs + ", elements=" + elements + "]";
+    }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Creates a canonical SHA-256 hash over all values of a configuration that affect the output. Every value is written with its
+ * length in front, so different configurations never produce the same canonical text. Elements are described by their class,
+ * name, CSS and pattern or keywords. Elements of an unknown type only contribute their class, name, CSS and SVG tags.
+ */
+final class ConfigFingerprint {
+
+    /** Version of the canonical form. Must be changed whenever the canonical form or the generated output changes. */
+    private static final String VERSION = "code2svg-fingerprint-2";
+
+    private final StringBuilder sb;
+
+    private ConfigFingerprint() {
+        super();
+        this.sb = new StringBuilder(1024);
+        add(VERSION);
+    }
+
+    /**
+     * Creates the fingerprint for configuration values.
+     * 
+     * @param fileExtension
+     *            File extension.
+     * @param width
+     *            Width.
+     * @param height
+     *            Height.
+     * @param textCss
+     *            Text CSS.
+     * @param fileConfigs
+     *            File configurations.
+     * @param elements
+     *            Elements.
+     * 
+     * @return Hex encoded SHA-256 hash.
+     */
+    static String create(@Nullable final String fileExtension, @Nullable final Integer width, @Nullable final Integer height,
+            @Nullable final String textCss, @NotNull final List<FileConfig> fileConfigs, @NotNull final List<Element> elements) {
+
+        final ConfigFingerprint fp = new ConfigFingerprint();
+        fp.add(fileExtension);
+        fp.add(width);
+        fp.add(height);
+        fp.add(textCss);
+        fp.add(fileConfigs.size());
+        for (final FileConfig fileConfig : fileConfigs) {
+            fp.add(fileConfig.getName());
+            fp.add(fileConfig.getWidth());
+            fp.add(fileConfig.getHeight());
+        }
+        fp.addElements(elements);
+        return Code2SvgUtils.sha256(fp.sb.toString().getBytes(StandardCharsets.UTF_8));
+
+    }
+
+    /**
+     * Creates the fingerprint for the element definitions only. It is enough to identify the result of a tokenization, as the
+     * positions of the elements do not depend on the other values.
+     * 
+     * @param elements
+     *            Elements.
+     * 
+     * @return Hex encoded SHA-256 hash.
+     */
+    static String create(@NotNull final List<Element> elements) {
+        final ConfigFingerprint fp = new ConfigFingerprint();
+        fp.addElements(elements);
+        return Code2SvgUtils.sha256(fp.sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void addElements(final List<Element> elements) {
+        add(elements.size());
+        for (final Element element : elements) {
+            add(element.getClass().getName());
+            add(element.getName());
+            add(element.getCSS());
+            if (element instanceof KeywordElement) {
+                final List<String> keywords = ((KeywordElement) element).getKeywords();
+                if (keywords == null) {
+                    add(null);
+                } else {
+                    add(keywords.size());
+                    keywords.forEach(this::add);
+                }
+            } else if (element instanceof AbstractRegExprElement) {
+                add(((AbstractRegExprElement) element).getPattern());
+            } else {
+                add(element.getSvgStartTag());
+                add(element.getSvgEndTag());
+            }
+        }
+    }
+
+    private void add(@Nullable final Object value) {
+        if (value == null) {
+            sb.append("-;");
+        } else {
+            final String str = value.toString();
+            sb.append(str.length()).append(':').append(str).append(';');
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Result of converting all files of a directory. A failed file does not stop the conversion of the other files.
+ */
+public final class ConvertDirResult {
+
+    private final List<File> converted;
+
+    private final List<File> unchanged;
+
+    private final List<File> skipped;
+
+    private final Map<File, RuntimeException> failures;
+
+    /**
+     * Default constructor.
+     */
+    ConvertDirResult() {
+        super();
+        this.converted = new ArrayList<>();
+        this.unchanged = new ArrayList<>();
+        this.skipped = new ArrayList<>();
+        this.failures = new TreeMap<>();
+    }
+
+    /**
+     * Adds a successfully converted source file.
+     * 
+     * @param file
+     *            Source file.
+     * @param written
+     *            TRUE if the SVG file was written, FALSE if it already had the same content.
+     */
+    synchronized void addConverted(@NotNull final File file, final boolean written) {
+        Utils4J.checkNotNull("file", file);
+        converted.add(file);
+        if (!written) {
+            unchanged.add(file);
+        }
+    }
+
+    /**
+     * Adds a source file that was not converted because it was not selected.
+     * 
+     * @param file
+     *            Source file.
+     */
+    synchronized void addSkipped(@NotNull final File file) {
+        Utils4J.checkNotNull("file", file);
+        skipped.add(file);
+    }
+
+    /**
+     * Adds a source file that could not be converted.
+     * 
+     * @param file
+     *            Source file.
+     * @param ex
+     *            Cause of the failure.
+     */
+    synchronized void addFailure(@NotNull final File file, @NotNull final RuntimeException ex) {
+        Utils4J.checkNotNull("file", file);
+        Utils4J.checkNotNull("ex", ex);
+        failures.put(file, ex);
+    }
+
+    /**
+     * Returns the successfully converted source files sorted by path.
+     * 
+     * @return Unmodifiable list of files.
+     */
+    public synchronized List<File> getConverted() {
+        final List<File> list = new ArrayList<>(converted);
+        Collections.sort(list);
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the converted source files whose SVG file already had the same content and was not written again, sorted by path.
+     * 
+     * @return Unmodifiable list of files.
+     */
+    public synchronized List<File> getUnchanged() {
+        final List<File> list = new ArrayList<>(unchanged);
+        Collections.sort(list);
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the number of converted source files whose SVG file was written.
+     * 
+     * @return Number of written files.
+     */
+    public synchronized int getWrittenCount() {
+        return converted.size() - unchanged.size();
+    }
+
+    /**
+     * Returns the number of converted source files whose SVG file already had the same content.
+     * 
+     * @return Number of unchanged files.
+     */
+    public synchronized int getUnchangedCount() {
+        return unchanged.size();
+    }
+
+    /**
+     * Returns the source files that were not selected for conversion sorted by path.
+     * 
+     * @return Unmodifiable list of files.
+     */
+    public synchronized List<File> getSkipped() {
+        final List<File> list = new ArrayList<>(skipped);
+        Collections.sort(list);
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the source files that could not be converted sorted by path.
+     * 
+     * @return Unmodifiable map with the source file as key and the cause of the failure as value.
+     */
+    public synchronized Map<File, RuntimeException> getFailures() {
+        return Collections.unmodifiableMap(new TreeMap<>(failures));
+    }
+
+    /**
+     * Determines if all files were converted.
+     * 
+     * @return TRUE if there are no failures.
+     */
+    public synchronized boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ConvertDirResult [converted=" + converted.size() + ", unchanged=" + unchanged.size() + ", skipped=" + skipped.size() + ", failures=" + failures.keySet() + "]";
+    }
+
+}
@@ -18,7 +18,10 @@
 package org.fuin.code2svg.core;
 
 /**
- * Matcher used to find a piece an element in a text.
+ * Matcher used to find a piece an element in a text.<br>
+ * <br>
+ * The converter only uses {@link #find()}, {@link #start()} and {@link #end()}. It records the boundaries of the matches and
+ * copies the text between them itself, so the append methods are never called while converting.
  */
 public interface ElementMatcher {
 
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Creates the matchers of an element. The factory is created once from the definition of the element, so everything that is
+ * expensive to build, like the compiled regular expression, is shared by all matchers it creates.
+ */
+@FunctionalInterface
+interface ElementMatcherFactory {
+
+    /**
+     * Creates a matcher for a text.
+     * 
+     * @param text
+     *            Text to search.
+     * 
+     * @return New matcher.
+     */
+    ElementMatcher matcher(@NotNull String text);
+
+    /**
+     * Compiles the current definition of an element. Later changes of the element have no effect on the result.
+     * 
+     * @param element
+     *            Element to compile.
+     * 
+     * @return Factory for the matchers of the element.
+     */
+    static ElementMatcherFactory compile(@NotNull final Element element) {
+        if (element instanceof AbstractRegExprElement) {
+            return ((AbstractRegExprElement) element).compile();
+        }
+        // Other element types create their matchers themselves
+        return element::matcher;
+    }
+
+}
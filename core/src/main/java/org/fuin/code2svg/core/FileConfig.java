@@ -47,7 +47,7 @@ public final class FileConfig {
     private Integer height;
 
     @XmlTransient
-    private Pattern compiledName;
+    private volatile Pattern compiledName;
 
     /**
      * Package visible default constructor for deserialization.
@@ -106,10 +106,12 @@ public final class FileConfig {
      * @return Name pattern.
      */
     public final Pattern getCompiledName() {
-        if (compiledName == null) {
-            compiledName = Pattern.compile(name);
+        Pattern pattern = compiledName;
+        if (pattern == null) {
+            pattern = Pattern.compile(name);
+            compiledName = pattern;
         }
-        return compiledName;
+        return pattern;
     }
 
     @Override
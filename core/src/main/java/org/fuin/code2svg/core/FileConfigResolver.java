@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Finds the first file configuration whose name pattern matches the absolute path of a file. The result is the same as trying
+ * all patterns in the order of the list, but most patterns are never executed:
+ * <ul>
+ * <li>A pattern that is a literal, like <code>/tmp/def\.ddd</code>, is looked up in a map of paths.</li>
+ * <li>A pattern that is <code>.*</code> followed by a literal, like <code>.*&#47;abc\.ddd</code>, is looked up in a map of file
+ * name suffixes and only confirmed with a suffix comparison.</li>
+ * <li>Only other patterns are executed as regular expressions, and only those before the first match found in the maps.</li>
+ * </ul>
+ * Instances are immutable and can be used by any number of threads.
+ */
+final class FileConfigResolver {
+
+    private static final int[] NONE = new int[0];
+
+    private final List<FileConfig> fileConfigs;
+
+    /** Literal paths with the indexes of the configurations. */
+    private final Map<String, Integer> exact;
+
+    /** Literal suffixes of the path by the part after the last path separator. */
+    private final Map<String, int[]> suffixes;
+
+    private final String[] suffix;
+
+    /** Indexes of the configurations that need a regular expression in ascending order. */
+    private final int[] regExprs;
+
+    private final Pattern[] patterns;
+
+    /**
+     * Constructor with file configurations.
+     *
+     * @param fileConfigs
+     *            File configurations in the order they are tried.
+     */
+    FileConfigResolver(@NotNull final List<FileConfig> fileConfigs) {
+        super();
+        Utils4J.checkNotNull("fileConfigs", fileConfigs);
+        this.fileConfigs = new ArrayList<>(fileConfigs);
+        this.exact = new HashMap<>();
+        this.suffixes = new HashMap<>();
+        this.suffix = new String[fileConfigs.size()];
+        this.patterns = new Pattern[fileConfigs.size()];
+        final List<Integer> others = new ArrayList<>();
+        for (int i = 0; i < fileConfigs.size(); i++) {
+            final String name = fileConfigs.get(i).getName();
+            patterns[i] = fileConfigs.get(i).getCompiledName();
+            final String literal = literal(name, name.startsWith(".*") ? 2 : 0);
+            if (literal == null) {
+                others.add(i);
+            } else if (name.startsWith(".*")) {
+                suffix[i] = literal;
+                suffixes.merge(fileName(literal), new int[] { i }, FileConfigResolver::concat);
+            } else {
+                exact.putIfAbsent(literal, i);
+            }
+        }
+        this.regExprs = others.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the first file configuration that matches a file.
+     *
+     * @param file
+     *            File to find a configuration for or <code>null</code> if the source is no file.
+     *
+     * @return File configuration or <code>null</code> if no pattern matches.
+     */
+    @Nullable
+    FileConfig findFor(@Nullable final File file) {
+        if (file == null || fileConfigs.isEmpty()) {
+            return null;
+        }
+        final String path = file.getAbsolutePath();
+        if (hasLineTerminator(path)) {
+            // The '.' of a pattern does not match these characters, so the literal lookup would not be exact
+            return findWithPatterns(path);
+        }
+        int best = Integer.MAX_VALUE;
+        final Integer exactIndex = exact.get(path);
+        if (exactIndex != null) {
+            best = exactIndex;
+        }
+        final int nameStart = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+        for (int start = nameStart; start <= path.length(); start++) {
+            for (final int i : suffixes.getOrDefault(path.substring(start), NONE)) {
+                if (i < best && path.endsWith(suffix[i])) {
+                    best = i;
+                }
+            }
+        }
+        for (final int i : regExprs) {
+            if (i >= best) {
+                break;
+            }
+            if (patterns[i].matcher(path).matches()) {
+                best = i;
+            }
+        }
+        if (best == Integer.MAX_VALUE) {
+            return null;
+        }
+        return fileConfigs.get(best);
+    }
+
+    private FileConfig findWithPatterns(final String path) {
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i].matcher(path).matches()) {
+                return fileConfigs.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the text a part of a regular expression matches if it only consists of literal characters, escaped characters and
+     * quoted sections.
+     *
+     * @param regExpr
+     *            Regular expression.
+     * @param start
+     *            Position to start at.
+     *
+     * @return Text matched by the expression from the start position or <code>null</code> if the expression is no literal.
+     */
+    @Nullable
+    static String literal(@NotNull final String regExpr, final int start) {
+        final StringBuilder sb = new StringBuilder();
+        int i = start;
+        while (i < regExpr.length()) {
+            final char ch = regExpr.charAt(i);
+            if (ch == '\\') {
+                if (i + 1 >= regExpr.length()) {
+                    return null;
+                }
+                final char next = regExpr.charAt(i + 1);
+                if (next == 'Q') {
+                    final int end = regExpr.indexOf("\\E", i + 2);
+                    if (end < 0) {
+                        sb.append(regExpr, i + 2, regExpr.length());
+                        return sb.toString();
+                    }
+                    sb.append(regExpr, i + 2, end);
+                    i = end + 2;
+                    continue;
+                }
+                if (Character.isLetterOrDigit(next)) {
+                    // Character classes, back references and the like
+                    return null;
+                }
+                sb.append(next);
+                i = i + 2;
+                continue;
+            }
+            if (".[]{}()*+?^$|".indexOf(ch) >= 0) {
+                return null;
+            }
+            sb.append(ch);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    private static String fileName(final String literal) {
+        return literal.substring(Math.max(literal.lastIndexOf('/'), literal.lastIndexOf('\\')) + 1);
+    }
+
+    private static boolean hasLineTerminator(final String path) {
+        for (int i = 0; i < path.length(); i++) {
+            final char ch = path.charAt(i);
+            if (ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] concat(final int[] a, final int[] b) {
+        final int[] result = new int[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+}
@@ -77,19 +77,27 @@ public final class KeywordElement extends AbstractRegExprElement {
         return keywords;
     }
 
+    /**
+     * Creates matchers that look up the keywords in a tree built once and ignore keywords inside double quoted strings.
+     */
+    @Override
+    final ElementMatcherFactory compile() {
+        final KeywordTrie trie = new KeywordTrie(keywords);
+        return text -> new OutsideStringMatcher(new KeywordMatcher(trie, text), text);
+    }
+
     @Override
     public String toString() {
-        return "RegExprElement [name=" + getName() + ", css=" + getCSS() + ", keywords=" + keywords + "]";
+        return "KeywordElement [name=" + getName() + ", css=" + getCSS() + ", keywords=" + keywords + "]";
     }
 
     private static String keywords2expression(final List<String> keywords) {
-        final String notWithinQuotesExpression = "(?=([^\"\\\\]*(\\\\.|\"([^\"\\\\]*\\\\.)*[^\"\\\\]*\"))*[^\"]*$)";
         final StringBuilder sb = new StringBuilder();
         for (final String keyword : keywords) {
             if (sb.length() > 0) {
                 sb.append("|");
             }
-            sb.append("(\\b" + keyword + "\\b)" + notWithinQuotesExpression);
+            sb.append("(\\b" + keyword + "\\b)");
         }
         return sb.toString();
     }
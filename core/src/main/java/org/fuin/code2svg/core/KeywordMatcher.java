@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Element matcher that locates keywords using a {@link KeywordTrie}. The matches are the same as the ones of the regular
+ * expression {@link KeywordElement#getPattern()} creates: The leftmost match wins and if multiple keywords match at the same
+ * position, the one listed first is used. The cost per position depends only on the length of the longest keyword, not on the
+ * number of keywords.
+ */
+final class KeywordMatcher implements ElementMatcher {
+
+    private static final Pattern BOUNDARY = Pattern.compile("\\b");
+
+    private final KeywordTrie trie;
+
+    private final String text;
+
+    private final Matcher boundary;
+
+    private final Matcher fallback;
+
+    private int fallbackStart;
+
+    private int fallbackEnd;
+
+    private int fallbackPriority;
+
+    private int searchFrom;
+
+    private int start;
+
+    private int end;
+
+    private int appendPos;
+
+    /**
+     * Constructor with keywords and text.
+     *
+     * @param trie
+     *            Keywords to find.
+     * @param text
+     *            Text to search.
+     */
+    KeywordMatcher(@NotNull final KeywordTrie trie, @NotNull final String text) {
+        super();
+        Utils4J.checkNotNull("trie", trie);
+        Utils4J.checkNotNull("text", text);
+        this.trie = trie;
+        this.text = text;
+        this.boundary = BOUNDARY.matcher(text).useTransparentBounds(true);
+        if (trie.getFallback() == null) {
+            this.fallback = null;
+        } else {
+            this.fallback = trie.getFallback().matcher(text);
+        }
+        this.fallbackStart = -1;
+        this.searchFrom = 0;
+        this.start = -1;
+        this.end = -1;
+        this.appendPos = 0;
+    }
+
+    @Override
+    public boolean find() {
+        if (searchFrom > text.length()) {
+            return false;
+        }
+        final int limit = nextFallback();
+        for (int pos = searchFrom; pos < limit && pos < text.length(); pos++) {
+            final int found = matchAt(pos, Integer.MAX_VALUE);
+            if (found >= 0) {
+                return accept(pos, pos + found);
+            }
+        }
+        if (limit == Integer.MAX_VALUE) {
+            searchFrom = text.length() + 1;
+            return false;
+        }
+        // A literal keyword with a higher priority may start at the same position
+        final int found = matchAt(limit, fallbackPriority);
+        if (found >= 0) {
+            return accept(limit, limit + found);
+        }
+        return accept(fallbackStart, fallbackEnd);
+    }
+
+    @Override
+    public int start() {
+        if (start < 0) {
+            throw new IllegalStateException("No match available");
+        }
+        return start;
+    }
+
+    @Override
+    public int end() {
+        if (end < 0) {
+            throw new IllegalStateException("No match available");
+        }
+        return end;
+    }
+
+    /**
+     * Appends the text since the last match and the replacement. Other than {@link Matcher#appendReplacement(StringBuffer, String)}
+     * the replacement is used literally, group references are not supported.
+     */
+    @Override
+    public void appendReplacement(final StringBuffer sb, final String replacement) {
+        sb.append(text, appendPos, start());
+        sb.append(replacement);
+        appendPos = end();
+    }
+
+    @Override
+    public void appendTail(final StringBuffer sb) {
+        sb.append(text, appendPos, text.length());
+    }
+
+    private boolean accept(final int matchStart, final int matchEnd) {
+        start = matchStart;
+        end = matchEnd;
+        if (matchStart == matchEnd) {
+            searchFrom = matchEnd + 1;
+        } else {
+            searchFrom = matchEnd;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the start of the next match of the regular expression for keywords that are not literal text.
+     *
+     * @return Start or {@link Integer#MAX_VALUE} if there is no such match.
+     */
+    private int nextFallback() {
+        if (fallback == null) {
+            return Integer.MAX_VALUE;
+        }
+        if (fallbackStart < searchFrom) {
+            if (!fallback.find(searchFrom)) {
+                fallbackStart = Integer.MAX_VALUE;
+                return fallbackStart;
+            }
+            fallbackStart = fallback.start();
+            fallbackEnd = fallback.end();
+            fallbackPriority = trie.fallbackPriority(fallback);
+        }
+        return fallbackStart;
+    }
+
+    /**
+     * Returns the length of the literal keyword with the highest priority that matches at a position.
+     *
+     * @param pos
+     *            Position in the text.
+     * @param maxPriority
+     *            Only keywords with a priority lower than this one are considered.
+     *
+     * @return Length or <code>-1</code> if no keyword matches.
+     */
+    private int matchAt(final int pos, final int maxPriority) {
+        int bestPriority = maxPriority;
+        int bestLength = -1;
+        KeywordTrie.Node node = trie.getRoot();
+        for (int i = pos; i < text.length(); i++) {
+            node = node.child(text.charAt(i));
+            if (node == null) {
+                break;
+            }
+            for (final KeywordTrie.Entry entry : node.getEntries()) {
+                if (entry.getPriority() >= bestPriority) {
+                    break;
+                }
+                if ((!entry.isLeftBoundary() || isBoundary(pos)) && (!entry.isRightBoundary() || isBoundary(i + 1))) {
+                    bestPriority = entry.getPriority();
+                    bestLength = entry.getLength();
+                    break;
+                }
+            }
+        }
+        return bestLength;
+    }
+
+    private boolean isBoundary(final int pos) {
+        boundary.region(pos, text.length());
+        return boundary.lookingAt();
+    }
+
+}
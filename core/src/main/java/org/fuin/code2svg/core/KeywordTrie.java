@@ -0,0 +1,279 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Precompiled list of keywords. Every keyword of a {@link KeywordElement} is an expression that is used as
+ * <code>(\bkeyword\b)</code>. Keywords that consist of literal text, optionally separated by '|' like
+ * <code>cid|consistency</code>, are stored in a character tree. All other keywords are combined into one regular expression. Each
+ * literal alternative has a priority that is the position of the alternative in the expression all keywords would create, so the
+ * matcher can select the same alternative as the regular expression would.<br>
+ * <br>
+ * Instances are immutable and can be shared by multiple threads.
+ */
+final class KeywordTrie {
+
+    private static final String META_CHARS = "\\^$.|?*+()[]{}";
+
+    private static final String GROUP_PREFIX = "kw";
+
+    private final Node root;
+
+    private final Pattern fallback;
+
+    private final int[] fallbackPriorities;
+
+    /**
+     * Constructor with keywords.
+     *
+     * @param keywords
+     *            Keyword expressions in the order of priority.
+     */
+    KeywordTrie(@NotNull final List<String> keywords) {
+        super();
+        Utils4J.checkNotNull("keywords", keywords);
+        final NodeBuilder rootBuilder = new NodeBuilder();
+        final StringBuilder sb = new StringBuilder();
+        final List<Integer> priorities = new ArrayList<>();
+        int priority = 0;
+        for (final String keyword : keywords) {
+            final String[] alternatives = literalAlternatives(keyword);
+            if (alternatives == null) {
+                if (sb.length() > 0) {
+                    sb.append("|");
+                }
+                sb.append("(?<" + GROUP_PREFIX + priorities.size() + ">\\b" + keyword + "\\b)");
+                priorities.add(priority++);
+            } else {
+                for (int i = 0; i < alternatives.length; i++) {
+                    final boolean left = i == 0;
+                    final boolean right = i == alternatives.length - 1;
+                    rootBuilder.add(alternatives[i], 0, new Entry(priority++, alternatives[i].length(), left, right));
+                }
+            }
+        }
+        this.root = rootBuilder.build();
+        if (priorities.isEmpty()) {
+            this.fallback = null;
+            this.fallbackPriorities = new int[0];
+        } else {
+            this.fallback = Pattern.compile(sb.toString());
+            this.fallbackPriorities = priorities.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Returns the root node of the tree.
+     *
+     * @return Root node.
+     */
+    Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the regular expression for keywords that are not literal text.
+     *
+     * @return Expression or <code>null</code> if all keywords are literal.
+     */
+    @Nullable
+    Pattern getFallback() {
+        return fallback;
+    }
+
+    /**
+     * Returns the priority of the fallback keyword that matched.
+     *
+     * @param matcher
+     *            Matcher of the fallback pattern with a current match.
+     *
+     * @return Priority.
+     */
+    int fallbackPriority(@NotNull final Matcher matcher) {
+        for (int i = 0; i < fallbackPriorities.length; i++) {
+            if (matcher.start(GROUP_PREFIX + i) >= 0) {
+                return fallbackPriorities[i];
+            }
+        }
+        throw new IllegalStateException("No keyword group matched: " + matcher.group());
+    }
+
+    /**
+     * Splits a keyword into its literal alternatives.
+     *
+     * @param keyword
+     *            Keyword expression.
+     *
+     * @return Alternatives or <code>null</code> if the keyword is not literal text.
+     */
+    @Nullable
+    static String[] literalAlternatives(@NotNull final String keyword) {
+        final String[] alternatives = keyword.split("\\|", -1);
+        for (final String alternative : alternatives) {
+            if (alternative.isEmpty()) {
+                return null;
+            }
+            for (int i = 0; i < alternative.length(); i++) {
+                if (META_CHARS.indexOf(alternative.charAt(i)) >= 0) {
+                    return null;
+                }
+            }
+        }
+        return alternatives;
+    }
+
+    /**
+     * Literal alternative of a keyword.
+     */
+    static final class Entry {
+
+        private final int priority;
+
+        private final int length;
+
+        private final boolean leftBoundary;
+
+        private final boolean rightBoundary;
+
+        Entry(final int priority, final int length, final boolean leftBoundary, final boolean rightBoundary) {
+            super();
+            this.priority = priority;
+            this.length = length;
+            this.leftBoundary = leftBoundary;
+            this.rightBoundary = rightBoundary;
+        }
+
+        int getPriority() {
+            return priority;
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        boolean isLeftBoundary() {
+            return leftBoundary;
+        }
+
+        boolean isRightBoundary() {
+            return rightBoundary;
+        }
+
+    }
+
+    /**
+     * Node of the character tree.
+     */
+    static final class Node {
+
+        private final char[] chars;
+
+        private final Node[] children;
+
+        private final Entry[] entries;
+
+        Node(final char[] chars, final Node[] children, final Entry[] entries) {
+            super();
+            this.chars = chars;
+            this.children = children;
+            this.entries = entries;
+        }
+
+        /**
+         * Returns the child for a character.
+         *
+         * @param ch
+         *            Next character.
+         *
+         * @return Child or <code>null</code> if no keyword continues with the character.
+         */
+        @Nullable
+        Node child(final char ch) {
+            final int idx = Arrays.binarySearch(chars, ch);
+            if (idx < 0) {
+                return null;
+            }
+            return children[idx];
+        }
+
+        /**
+         * Returns the alternatives that end with this node, ordered by priority.
+         *
+         * @return Entries.
+         */
+        Entry[] getEntries() {
+            return entries;
+        }
+
+    }
+
+    /**
+     * Mutable node used while building the tree.
+     */
+    private static final class NodeBuilder {
+
+        private final List<Character> chars = new ArrayList<>();
+
+        private final List<NodeBuilder> children = new ArrayList<>();
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        void add(final String text, final int pos, final Entry entry) {
+            if (pos == text.length()) {
+                entries.add(entry);
+                return;
+            }
+            final char ch = text.charAt(pos);
+            int idx = chars.indexOf(ch);
+            if (idx < 0) {
+                chars.add(ch);
+                children.add(new NodeBuilder());
+                idx = chars.size() - 1;
+            }
+            children.get(idx).add(text, pos + 1, entry);
+        }
+
+        Node build() {
+            final Integer[] order = new Integer[chars.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Character.compare(chars.get(a), chars.get(b)));
+            final char[] sortedChars = new char[order.length];
+            final Node[] sortedChildren = new Node[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedChars[i] = chars.get(order[i]);
+                sortedChildren[i] = children.get(order[i]).build();
+            }
+            return new Node(sortedChars, sortedChildren, entries.toArray(new Entry[entries.size()]));
+        }
+
+    }
+
+}
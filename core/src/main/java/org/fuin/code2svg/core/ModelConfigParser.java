@@ -65,23 +65,10 @@ public final class ModelConfigParser {
      * @return Updated configuration.
      */
     public final Code2SvgConfig parse(@Nullable final File file, @NotNull final String model) {
-        final Code2SvgConfig.Builder builder = new Code2SvgConfig.Builder();
-        builder.copy(config);
-        builder.applyConfig(config.findFor(file));
-        final String json = extractJson(model);
-        if (json != null) {
-            final JsonObject jsonObj = parseJson(json);
-            if (jsonObj.containsKey("width")) {
-                builder.width(jsonObj.getInt("width"));
-            }
-            if (jsonObj.containsKey("height")) {
-                builder.height(jsonObj.getInt("height"));
-            }
-            if (jsonObj.containsKey("text-css")) {
-                builder.textCss(jsonObj.getString("text-css"));
-            }
-        }
-        return builder.build();
+        final ImageSettings settings = new ImageSettings(config.getWidth(), config.getHeight(), config.getTextCss())
+                .apply(config.findFor(file), model);
+        return new Code2SvgConfig.Builder().copy(config).width(settings.getWidth()).height(settings.getHeight())
+                .textCss(settings.getTextCss()).build();
     }
 
     static String extractJson(final String model) {
@@ -102,4 +89,107 @@ public final class ModelConfigParser {
         }
     }
 
+    /**
+     * Width, height and text CSS of an image. These are the values a file configuration or the inline configuration of a model can
+     * change.
+     */
+    static final class ImageSettings {
+
+        @Nullable
+        private final Integer width;
+
+        @Nullable
+        private final Integer height;
+
+        @Nullable
+        private final String textCss;
+
+        /**
+         * Constructor with all data.
+         * 
+         * @param width
+         *            Width.
+         * @param height
+         *            Height.
+         * @param textCss
+         *            CSS for the text.
+         */
+        ImageSettings(@Nullable final Integer width, @Nullable final Integer height, @Nullable final String textCss) {
+            super();
+            this.width = width;
+            this.height = height;
+            this.textCss = textCss;
+        }
+
+        /**
+         * Returns the settings with the values of a file configuration and of the inline configuration of a model applied. The
+         * inline configuration wins.
+         * 
+         * @param fileConfig
+         *            File configuration or <code>null</code>.
+         * @param model
+         *            Model to parse for {@link ModelConfigParser#CODE2SVG_KEY} followed by a valid JSON object.
+         * 
+         * @return New settings.
+         */
+        ImageSettings apply(@Nullable final FileConfig fileConfig, @NotNull final String model) {
+            Integer w = width;
+            Integer h = height;
+            String css = textCss;
+            if (fileConfig != null) {
+                if (fileConfig.getWidth() != null) {
+                    w = fileConfig.getWidth();
+                }
+                if (fileConfig.getHeight() != null) {
+                    h = fileConfig.getHeight();
+                }
+            }
+            final String json = extractJson(model);
+            if (json != null) {
+                final JsonObject jsonObj = parseJson(json);
+                if (jsonObj.containsKey("width")) {
+                    w = jsonObj.getInt("width");
+                }
+                if (jsonObj.containsKey("height")) {
+                    h = jsonObj.getInt("height");
+                }
+                if (jsonObj.containsKey("text-css")) {
+                    css = jsonObj.getString("text-css");
+                }
+            }
+            return new ImageSettings(w, h, css);
+        }
+
+        /**
+         * Returns the width.
+         * 
+         * @return Width.
+         */
+        @Nullable
+        Integer getWidth() {
+            return width;
+        }
+
+        /**
+         * Returns the height.
+         * 
+         * @return Height.
+         */
+        @Nullable
+        Integer getHeight() {
+            return height;
+        }
+
+        /**
+         * Returns the CSS for the text.
+         * 
+         * @return CSS.
+         */
+        @Nullable
+        String getTextCss() {
+            return textCss;
+        }
+
+    }
+
 }
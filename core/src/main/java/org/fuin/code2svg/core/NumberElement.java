@@ -17,6 +17,8 @@
  */
 package org.fuin.code2svg.core;
 
+import java.util.regex.Pattern;
+
 import javax.validation.constraints.NotEmpty;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -50,7 +52,16 @@ public class NumberElement extends AbstractRegExprElement {
 
     @Override
     public final String getPattern() {
-        return "(\\b([\\d]+(\\.[\\d]+)?|0x[a-f0-9]+)\\b)(?=([^\"\\\\]*(\\\\.|\"([^\"\\\\]*\\\\.)*[^\"\\\\]*\"))*[^\"]*$)";
+        return "(\\b([\\d]+(\\.[\\d]+)?|0x[a-f0-9]+)\\b)";
+    }
+
+    /**
+     * Creates matchers that ignore numbers inside double quoted strings.
+     */
+    @Override
+    final ElementMatcherFactory compile() {
+        final Pattern pattern = Pattern.compile(getPattern());
+        return text -> new OutsideStringMatcher(pattern.matcher(text), text);
     }
 
 }
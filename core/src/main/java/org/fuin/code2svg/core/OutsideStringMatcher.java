@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.util.BitSet;
+import java.util.regex.Matcher;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Element matcher that only returns matches of another matcher that are not located inside a double quoted string.<br>
+ * <br>
+ * A match is accepted if the text after the match can be read as a sequence of plain characters, backslash escapes and complete
+ * double quoted strings (with backslash escapes inside). This is exactly what the former lookahead
+ * <code>(?=([^"\\]*(\\.|"([^"\\]*\\.)*[^"\\]*"))*[^"]*$)</code> checked for every single match. The lexer state of all positions
+ * is calculated once in a backward pass over the text, so the check is linear for the whole text instead of scanning to the end
+ * of the text for every match.<br>
+ * <br>
+ * The wrapped matcher is expected not to match quotes or backslashes itself.
+ */
+public final class OutsideStringMatcher implements ElementMatcher {
+
+    private final ElementMatcher matcher;
+
+    private final String text;
+
+    private boolean analyzed;
+
+    private BitSet outside;
+
+    /**
+     * Constructor with pattern matcher and text.
+     *
+     * @param matcher
+     *            Matcher to use.
+     * @param text
+     *            Text the matcher was created for.
+     */
+    public OutsideStringMatcher(@NotNull final Matcher matcher, @NotNull final String text) {
+        this(new RegExprMatcher(matcher), text);
+    }
+
+    /**
+     * Constructor with element matcher and text.
+     *
+     * @param matcher
+     *            Matcher to use.
+     * @param text
+     *            Text the matcher was created for.
+     */
+    public OutsideStringMatcher(@NotNull final ElementMatcher matcher, @NotNull final String text) {
+        super();
+        Utils4J.checkNotNull("matcher", matcher);
+        Utils4J.checkNotNull("text", text);
+        this.matcher = matcher;
+        this.text = text;
+    }
+
+    @Override
+    public boolean find() {
+        while (matcher.find()) {
+            if (isOutsideString(matcher.end())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int start() {
+        return matcher.start();
+    }
+
+    @Override
+    public int end() {
+        return matcher.end();
+    }
+
+    @Override
+    public void appendReplacement(final StringBuffer sb, final String replacement) {
+        matcher.appendReplacement(sb, replacement);
+    }
+
+    @Override
+    public void appendTail(final StringBuffer sb) {
+        matcher.appendTail(sb);
+    }
+
+    private boolean isOutsideString(final int pos) {
+        if (!analyzed) {
+            // Without any quotes every position is outside a string
+            if (text.indexOf('"') >= 0) {
+                outside = outsideStrings(text);
+            }
+            analyzed = true;
+        }
+        return outside == null || outside.get(pos);
+    }
+
+    /**
+     * Determines for every position if the rest of the text starting there is not inside a double quoted string.
+     *
+     * @param text
+     *            Text to analyze.
+     *
+     * @return Bit set with one bit for every position including the end of the text.
+     */
+    static BitSet outsideStrings(@NotNull final String text) {
+        final int n = text.length();
+        final BitSet result = new BitSet(n + 1);
+        // Lexer states "outside" and "inside" a string at positions p + 1 and p + 2
+        boolean out1 = true;
+        boolean in1 = false;
+        boolean out2 = true;
+        boolean in2 = false;
+        boolean noQuote = true;
+        result.set(n);
+        for (int p = n - 1; p >= 0; p--) {
+            final char ch = text.charAt(p);
+            final boolean escape = p + 1 < n && !isLineTerminator(text.charAt(p + 1));
+            final boolean out;
+            final boolean in;
+            if (ch == '"') {
+                noQuote = false;
+                out = in1;
+                in = out1;
+            } else if (ch == '\\') {
+                out = noQuote || (escape && out2);
+                in = escape && in2;
+            } else {
+                out = noQuote || out1;
+                in = in1;
+            }
+            if (out) {
+                result.set(p);
+            }
+            out2 = out1;
+            in2 = in1;
+            out1 = out;
+            in1 = in;
+        }
+        return result;
+    }
+
+    private static boolean isLineTerminator(final char ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+    }
+
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Prepares a source text for tagging in a single pass over the characters. The result is the same as applying these steps one
+ * after the other:
+ * <ol>
+ * <li>Remove the inline configuration ({@link ModelConfigParser#PATTERN})</li>
+ * <li>Escape the text like {@link org.apache.commons.text.StringEscapeUtils#escapeXml10(String)}</li>
+ * <li>Replace strings like "°°9986°°" or "°°x277A°°" with an XML character entity like "&amp;#9986;"</li>
+ * </ol>
+ * In the same pass the width of every line is measured in characters as they are displayed: An escaped character or character
+ * entity counts as one character and a tab as four.
+ */
+final class SourcePreparer {
+
+    private static final char DEGREE = '°';
+
+    private static final int TAB_WIDTH = 4;
+
+    private final StringBuilder out;
+
+    private final String lineSeparator;
+
+    private final char lineSeparatorEnd;
+
+    private char pendingHighSurrogate;
+
+    private int column;
+
+    private int[] lineColumns;
+
+    private int lines;
+
+    /**
+     * Constructor with expected size.
+     *
+     * @param capacity
+     *            Initial capacity of the result.
+     * @param lineSeparator
+     *            Line separator used to count the lines.
+     */
+    private SourcePreparer(final int capacity, final String lineSeparator) {
+        super();
+        this.out = new StringBuilder(capacity);
+        this.lineSeparator = lineSeparator;
+        this.lineSeparatorEnd = lineSeparator.charAt(lineSeparator.length() - 1);
+        this.lineColumns = new int[16];
+    }
+
+    /**
+     * Prepares a source text.
+     *
+     * @param model
+     *            Source text.
+     *
+     * @return Text ready for tagging.
+     */
+    static String prepare(@NotNull final String model) {
+        return prepare(model, Code2Svg.LINE_SEPARATOR).getText();
+    }
+
+    /**
+     * Prepares a source text and measures the lines.
+     *
+     * @param model
+     *            Source text.
+     * @param lineSeparator
+     *            Line separator used to count the lines.
+     *
+     * @return Preparer with the text ready for tagging and the width of the lines.
+     */
+    static SourcePreparer prepare(@NotNull final String model, @NotNull final String lineSeparator) {
+        Utils4J.checkNotNull("model", model);
+        Utils4J.checkNotEmpty("lineSeparator", lineSeparator);
+        final SourcePreparer preparer = new SourcePreparer(model.length() + model.length() / 8, lineSeparator);
+        final Matcher matcher = ModelConfigParser.PATTERN.matcher(model);
+        int pos = 0;
+        while (matcher.find()) {
+            preparer.escape(model, pos, matcher.start());
+            pos = matcher.end();
+        }
+        // A high surrogate still pending at the end is unpaired and therefore removed
+        preparer.escape(model, pos, model.length());
+        preparer.endLine();
+        return preparer;
+    }
+
+    /**
+     * Returns the prepared text.
+     *
+     * @return Text ready for tagging.
+     */
+    String getText() {
+        return out.toString();
+    }
+
+    /**
+     * Returns the displayed width of every line.
+     *
+     * @return Number of characters per line. There is always at least one line.
+     */
+    int[] getLineColumns() {
+        return Arrays.copyOf(lineColumns, lines);
+    }
+
+    private void endLine() {
+        if (lines == lineColumns.length) {
+            lineColumns = Arrays.copyOf(lineColumns, lines * 2);
+        }
+        lineColumns[lines++] = column;
+        column = 0;
+    }
+
+    private void escape(final String model, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final char ch = model.charAt(i);
+            if (pendingHighSurrogate != 0) {
+                if (Character.isLowSurrogate(ch)) {
+                    out.append(pendingHighSurrogate);
+                    out.append(ch);
+                    column++;
+                    pendingHighSurrogate = 0;
+                    continue;
+                }
+                // Unpaired surrogates are removed
+                pendingHighSurrogate = 0;
+            }
+            escape(ch);
+        }
+    }
+
+    private void escape(final char ch) {
+        switch (ch) {
+        case '"':
+            append("&quot;");
+            return;
+        case '&':
+            append("&amp;");
+            return;
+        case '<':
+            append("&lt;");
+            return;
+        case '>':
+            append("&gt;");
+            return;
+        case '\'':
+            append("&apos;");
+            return;
+        case '\t':
+            out.append(ch);
+            column = column + TAB_WIDTH;
+            return;
+        case '\n':
+        case '\r':
+            out.append(ch);
+            if (ch == lineSeparatorEnd && endsWithLineSeparator()) {
+                // The other characters of the line separator were counted
+                column = column - (lineSeparator.length() - 1);
+                endLine();
+            } else {
+                column++;
+            }
+            return;
+        default:
+            break;
+        }
+        if (ch < 0x20 || ch == '\uFFFE' || ch == '\uFFFF' || Character.isLowSurrogate(ch)) {
+            // Not allowed in XML 1.0
+            return;
+        }
+        if (Character.isHighSurrogate(ch)) {
+            pendingHighSurrogate = ch;
+            return;
+        }
+        if ((ch >= 0x7F && ch <= 0x84) || (ch >= 0x86 && ch <= 0x9F)) {
+            out.append("&#").append((int) ch).append(';');
+            column++;
+            return;
+        }
+        out.append(ch);
+        column++;
+        if (ch == DEGREE) {
+            replaceEntity();
+        }
+    }
+
+    /**
+     * Replaces "°°digits°°" or "°°xhexdigits°°" at the end of the result with an XML character entity. As the replacement does not
+     * contain a '°', this is the same as replacing all non-overlapping matches of the expression
+     * <code>°°\d+?°°|°°x[0-9A-Fa-f]+?°°</code> from left to right.
+     */
+    private void replaceEntity() {
+        final int closing = out.length() - 2;
+        if (closing < 0 || out.charAt(closing) != DEGREE) {
+            return;
+        }
+        boolean decimal = true;
+        int i = closing - 1;
+        while (i >= 0 && isHexDigit(out.charAt(i))) {
+            decimal = decimal && out.charAt(i) <= '9';
+            i--;
+        }
+        if (i == closing - 1) {
+            return;
+        }
+        final int digits = i + 1;
+        if (!decimal) {
+            // Hexadecimal needs the 'x' in front of the digits
+            if (i < 0 || out.charAt(i) != 'x') {
+                return;
+            }
+            i--;
+        } else if (i >= 0 && out.charAt(i) == 'x') {
+            i--;
+        }
+        if (i < 1 || out.charAt(i) != DEGREE || out.charAt(i - 1) != DEGREE) {
+            return;
+        }
+        final int start = i - 1;
+        final String code = out.substring(digits, closing);
+        // All replaced characters were counted with one column each
+        column = column - (out.length() - start) + 1;
+        out.setLength(start);
+        out.append("&#");
+        if (digits - start == 3) {
+            out.append('x');
+        }
+        out.append(code).append(';');
+    }
+
+    private void append(final String entity) {
+        out.append(entity);
+        column++;
+    }
+
+    private boolean endsWithLineSeparator() {
+        final int offset = out.length() - lineSeparator.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < lineSeparator.length() - 1; i++) {
+            if (out.charAt(offset + i) != lineSeparator.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHexDigit(final char ch) {
+        return (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F');
+    }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.util.Arrays;
+
+/**
+ * Ordered set of disjoint spans that answers if a range of text is still free in logarithmic time. Spans and queried ranges are
+ * treated as closed intervals, so a range that only touches a span is not free. This is the same rule
+ * {@link PieceOfText#overlaps(int, int)} applies.
+ */
+final class SpanIndex {
+
+    private int[] starts;
+
+    private int[] ends;
+
+    private int size;
+
+    /**
+     * Constructor with initial capacity.
+     *
+     * @param capacity
+     *            Number of spans the index can hold before it has to grow.
+     */
+    SpanIndex(final int capacity) {
+        super();
+        final int cap = Math.max(capacity, 1);
+        this.starts = new int[cap];
+        this.ends = new int[cap];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of spans.
+     *
+     * @return Size.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Appends a span. Spans must be added in ascending order and must not overlap each other.
+     *
+     * @param start
+     *            Start position.
+     * @param end
+     *            End position.
+     */
+    void add(final int start, final int end) {
+        if (size > 0 && start <= ends[size - 1]) {
+            throw new IllegalArgumentException(
+                    "Span [" + start + ", " + end + "] is not after the last span [" + starts[size - 1] + ", " + ends[size - 1] + "]");
+        }
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /**
+     * Determines if a range neither overlaps nor touches any span.
+     *
+     * @param start
+     *            Start position.
+     * @param end
+     *            End position.
+     *
+     * @return TRUE if the range is free, else FALSE.
+     */
+    boolean isFree(final int start, final int end) {
+        // Last span that starts at or before the end of the range
+        int low = 0;
+        int high = size - 1;
+        int idx = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (starts[mid] <= end) {
+                idx = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // Spans are disjoint and ordered, so no earlier span can reach further
+        return idx < 0 || ends[idx] < start;
+    }
+
+}
@@ -0,0 +1,328 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Renders a tokenized source as complete SVG document with one CSS class per element. An included style block only contains the
+ * rules of the elements that occur in the source. The text is written incrementally, so the
+ * document is never held in memory as a whole. The renderer is stateless and can be used by any number of threads.<br>
+ * <br>
+ * By default every line starts with an empty positioning <code>tspan</code> and element tags are closed and reopened at every line
+ * separator. The compact mode creates the same image with less markup: Every non-empty line is one <code>tspan</code> that carries
+ * the position and contains the text, empty lines are merged into the position of the next line, adjacent tokens of the same
+ * element share one tag and empty tokens are omitted.<br>
+ * <br>
+ * With automatic size, the width and height of the image are calculated from the number of lines and the width of the longest
+ * line, which are measured while the source is prepared. The font size is taken from the text CSS (default 16px), every line is
+ * 1.2em high and every character 0.6em wide, which fits common monospace fonts. The configured width and height are ignored.
+ */
+public final class SvgRenderer implements TokenRenderer {
+
+    private static final String XML_PREFIX = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"no\" ?>";
+
+    private static final String DOC_TYPE = "<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.1//EN\" \"http://www.w3.org/Graphics/SVG/1.1/DTD/svg11.dtd\">";
+
+    private static final String LINE_SEPARATOR = Code2Svg.LINE_SEPARATOR;
+
+    private static final String LINE_START = "<tspan dy=\"1.2em\" x=\"10\"> </tspan>";
+
+    private static final String COMPACT_LINE_START = "<tspan x=\"10\" dy=\"1.2em\"> ";
+
+    private static final String COMPACT_LINE_END = "</tspan>";
+
+    private static final Pattern FONT_SIZE = Pattern.compile("font-size\\s*:\\s*(\\d*\\.?\\d+)\\s*(px|pt|em|rem|%)?");
+
+    private static final double DEFAULT_FONT_SIZE = 16;
+
+    private static final double LINE_HEIGHT = 1.2;
+
+    private static final double CHAR_WIDTH = 0.6;
+
+    /** Space below the baseline of the last line in em. */
+    private static final double DESCENT = 0.4;
+
+    private static final int MARGIN = 10;
+
+    private final boolean compact;
+
+    private final boolean autoSize;
+
+    /**
+     * Default constructor for the standard markup.
+     */
+    public SvgRenderer() {
+        this(false);
+    }
+
+    /**
+     * Constructor with mode.
+     * 
+     * @param compact
+     *            TRUE to create compact markup, FALSE for the standard markup.
+     */
+    public SvgRenderer(final boolean compact) {
+        this(compact, false);
+    }
+
+    /**
+     * Constructor with all options.
+     * 
+     * @param compact
+     *            TRUE to create compact markup, FALSE for the standard markup.
+     * @param autoSize
+     *            TRUE to calculate the width and height from the text, FALSE to use the configured values.
+     */
+    public SvgRenderer(final boolean compact, final boolean autoSize) {
+        super();
+        this.compact = compact;
+        this.autoSize = autoSize;
+    }
+
+    /**
+     * Returns the information if compact markup is created.
+     * 
+     * @return TRUE if non-empty lines are single <code>tspan</code> elements.
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Returns the information if the size of the image is calculated from the text.
+     * 
+     * @return TRUE if width, height and view box are calculated.
+     */
+    public boolean isAutoSize() {
+        return autoSize;
+    }
+
+    @Override
+    public void render(@NotNull final TokenizedSource source, @NotNull final Writer writer) throws IOException {
+        render(source, null, null, writer);
+    }
+
+    /**
+     * Writes the SVG document for a source.
+     * 
+     * @param source
+     *            Tokenized source to render.
+     * @param title
+     *            Title of the document or <code>null</code>.
+     * @param description
+     *            Description of the document or <code>null</code>.
+     * @param writer
+     *            Writer for the document. It is not flushed or closed.
+     * 
+     * @throws IOException
+     *             Error writing the document.
+     */
+    public void render(@NotNull final TokenizedSource source, @Nullable final String title, @Nullable final String description,
+            @NotNull final Writer writer) throws IOException {
+        render(source, title, description, null, writer);
+    }
+
+    /**
+     * Writes the SVG document for a source that optionally references an external stylesheet instead of containing the CSS.
+     * 
+     * @param source
+     *            Tokenized source to render.
+     * @param title
+     *            Title of the document or <code>null</code>.
+     * @param description
+     *            Description of the document or <code>null</code>.
+     * @param stylesheet
+     *            URL of a stylesheet with the CSS returned by {@link #css(CompiledConfig)} or <code>null</code> to include the CSS
+     *            in the document.
+     * @param writer
+     *            Writer for the document. It is not flushed or closed.
+     * 
+     * @throws IOException
+     *             Error writing the document.
+     */
+    public void render(@NotNull final TokenizedSource source, @Nullable final String title, @Nullable final String description,
+            @Nullable final String stylesheet, @NotNull final Writer writer) throws IOException {
+
+        Utils4J.checkNotNull("source", source);
+        Utils4J.checkNotNull("writer", writer);
+        final CompiledConfig config = source.getConfig();
+
+        writer.write(XML_PREFIX + LINE_SEPARATOR);
+        if (stylesheet != null) {
+            writer.write("<?xml-stylesheet type=\"text/css\" href=\"" + stylesheet + "\"?>" + LINE_SEPARATOR);
+        }
+        writer.write(DOC_TYPE + LINE_SEPARATOR);
+        writer.write("<svg version=\"1.1\" " + sizeMarkup(source) + "xmlns=\"http://www.w3.org/2000/svg\">" + LINE_SEPARATOR);
+        if (title != null) {
+            writer.write("<title>" + title + "</title>" + LINE_SEPARATOR);
+        }
+        if (description != null) {
+            writer.write("<desc>" + description + "</desc>" + LINE_SEPARATOR);
+        }
+        if (stylesheet == null) {
+            writer.write("<style>" + LINE_SEPARATOR);
+            writer.write("<![CDATA[" + LINE_SEPARATOR);
+            // Only the rules of elements that occur in this source
+            writer.write(textCss(config) + config.getElementCss(source.getTokens().usedElements()));
+            writer.write("]]>" + LINE_SEPARATOR);
+            writer.write("</style>" + LINE_SEPARATOR);
+        }
+        writer.write("<text xml:space=\"preserve\">" + LINE_SEPARATOR);
+        // Tag elements, add line start markup and expand tabs
+        final SvgTextBuilder out;
+        if (compact) {
+            out = new SvgTextBuilder(writer, LINE_SEPARATOR, SvgRenderer::compactLineStart, COMPACT_LINE_END);
+        } else {
+            out = new SvgTextBuilder(writer, LINE_SEPARATOR, LINE_START);
+        }
+        config.getTokenizer().render(source.getText(), source.getTokens(), out);
+        out.finish();
+        out.flush();
+        writer.write(LINE_SEPARATOR);
+        writer.write("</text>" + LINE_SEPARATOR);
+        writer.write("</svg>" + LINE_SEPARATOR);
+
+    }
+
+    /**
+     * Returns the CSS rules for the text and all elements of a configuration.
+     * 
+     * @param config
+     *            Configuration.
+     * 
+     * @return One rule per line.
+     */
+    @NotNull
+    public static String css(@NotNull final CompiledConfig config) {
+        Utils4J.checkNotNull("config", config);
+        return textCss(config) + config.getElementCss();
+    }
+
+    private static String textCss(final CompiledConfig config) {
+        return "text { " + config.getTextCss() + " }" + LINE_SEPARATOR;
+    }
+
+    /**
+     * Returns the tagged text of a source without the surrounding SVG document.
+     * 
+     * @param source
+     *            Tokenized source to render.
+     * 
+     * @return Text with line start markup and element tags.
+     */
+    String renderText(@NotNull final TokenizedSource source) {
+        final String text = source.getText();
+        final int capacity = text.length() + text.length() / 2;
+        final SvgTextBuilder out;
+        if (compact) {
+            out = new SvgTextBuilder(capacity, LINE_SEPARATOR, SvgRenderer::compactLineStart, COMPACT_LINE_END);
+        } else {
+            out = new SvgTextBuilder(capacity, LINE_SEPARATOR, LINE_START);
+        }
+        try {
+            source.getConfig().getTokenizer().render(text, source.getTokens(), out);
+            out.finish();
+        } catch (final IOException ex) {
+            // Never happens as there is no writer
+            throw new IllegalStateException(ex);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns the start markup of a line in compact mode. The line height of 1.2em is multiplied by the number of lines to advance
+     * and written with one decimal place at most.
+     */
+    private static String compactLineStart(final int lines) {
+        if (lines == 1) {
+            return COMPACT_LINE_START;
+        }
+        final long tenths = 12L * lines;
+        final StringBuilder sb = new StringBuilder("<tspan x=\"10\" dy=\"");
+        sb.append(tenths / 10);
+        if (tenths % 10 != 0) {
+            sb.append('.').append(tenths % 10);
+        }
+        return sb.append("em\"> ").toString();
+    }
+
+    private String sizeMarkup(final TokenizedSource source) {
+        if (autoSize) {
+            return autoSizeMarkup(source);
+        }
+        return widthHeighMarkup(source.getConfig());
+    }
+
+    private static String autoSizeMarkup(final TokenizedSource source) {
+        final double fontSize = fontSize(source.getConfig().getTextCss());
+        // Every line starts with a space
+        final long width = (long) Math.ceil(2 * MARGIN + (source.getColumns() + 1) * CHAR_WIDTH * fontSize);
+        final long height = (long) Math.ceil((source.getLines() * LINE_HEIGHT + DESCENT) * fontSize);
+        return "width=\"" + width + "\" height=\"" + height + "\" viewBox=\"0 0 " + width + " " + height + "\" ";
+    }
+
+    /**
+     * Returns the font size of the text CSS in pixels.
+     */
+    static double fontSize(@Nullable final String textCss) {
+        if (textCss == null) {
+            return DEFAULT_FONT_SIZE;
+        }
+        final Matcher matcher = FONT_SIZE.matcher(textCss);
+        if (!matcher.find()) {
+            return DEFAULT_FONT_SIZE;
+        }
+        final double value = Double.parseDouble(matcher.group(1));
+        final String unit = matcher.group(2);
+        if (unit == null || unit.equals("px")) {
+            return value;
+        }
+        if (unit.equals("pt")) {
+            return value * 4 / 3;
+        }
+        if (unit.equals("%")) {
+            return value * DEFAULT_FONT_SIZE / 100;
+        }
+        return value * DEFAULT_FONT_SIZE;
+    }
+
+    private static String widthHeighMarkup(final CompiledConfig config) {
+        final StringBuilder sb = new StringBuilder();
+        if (config.getWidth() != null) {
+            sb.append("width=\"");
+            sb.append(config.getWidth());
+            sb.append("\" ");
+        }
+        if (config.getHeight() != null) {
+            sb.append("height=\"");
+            sb.append(config.getHeight());
+            sb.append("\" ");
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,362 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.IntFunction;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Buffer for the content of the SVG text element. If a line start markup is set, it is written at the beginning and after every
+ * line separator and tabs are expanded to four spaces. This is done while appending, so the text is not copied again to add the
+ * line markup.<br>
+ * <br>
+ * If a writer is set, the content is passed to it in chunks, so the complete text is never held in memory.<br>
+ * <br>
+ * In compact mode every non-empty line is enclosed in one line markup that positions and contains the text. Empty lines create no
+ * markup at all. Instead the number of lines to advance is passed to the line start markup of the next non-empty line.
+ */
+final class SvgTextBuilder {
+
+    private static final String TAB = "    ";
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final StringBuilder sb;
+
+    @Nullable
+    private final Writer writer;
+
+    private char[] chunk;
+
+    private final String lineSeparator;
+
+    private final char lineSeparatorEnd;
+
+    private final String lineStart;
+
+    @Nullable
+    private final IntFunction<String> compactLineStart;
+
+    private final String compactLineEnd;
+
+    private boolean lineOpen;
+
+    /** Position of the line start markup in the buffer or -1 if the line is known not to be empty. */
+    private int lineOpenPos;
+
+    private int lineOpenLength;
+
+    private int pendingLines;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param capacity
+     *            Initial capacity.
+     * @param lineSeparator
+     *            Line separator.
+     * @param lineStart
+     *            Markup to insert at the start of every line or <code>null</code> to append the text unchanged.
+     */
+    SvgTextBuilder(final int capacity, @NotNull final String lineSeparator, @Nullable final String lineStart) {
+        this(null, capacity, lineSeparator, lineStart, null, null);
+    }
+
+    /**
+     * Constructor for compact mode.
+     *
+     * @param capacity
+     *            Initial capacity.
+     * @param lineSeparator
+     *            Line separator.
+     * @param lineStart
+     *            Creates the markup that starts a non-empty line. The argument is the number of lines to advance.
+     * @param lineEnd
+     *            Markup that ends a non-empty line.
+     */
+    SvgTextBuilder(final int capacity, @NotNull final String lineSeparator, @NotNull final IntFunction<String> lineStart,
+            @NotNull final String lineEnd) {
+        this(null, capacity, lineSeparator, null, lineStart, lineEnd);
+    }
+
+    /**
+     * Constructor with writer.
+     *
+     * @param writer
+     *            Writer to pass the content to or <code>null</code> to keep it in memory.
+     * @param lineSeparator
+     *            Line separator.
+     * @param lineStart
+     *            Markup to insert at the start of every line or <code>null</code> to append the text unchanged.
+     */
+    SvgTextBuilder(@Nullable final Writer writer, @NotNull final String lineSeparator, @Nullable final String lineStart) {
+        this(writer, CHUNK_SIZE + CHUNK_SIZE / 4, lineSeparator, lineStart, null, null);
+    }
+
+    /**
+     * Constructor for compact mode with writer.
+     *
+     * @param writer
+     *            Writer to pass the content to or <code>null</code> to keep it in memory.
+     * @param lineSeparator
+     *            Line separator.
+     * @param lineStart
+     *            Creates the markup that starts a non-empty line. The argument is the number of lines to advance.
+     * @param lineEnd
+     *            Markup that ends a non-empty line.
+     */
+    SvgTextBuilder(@Nullable final Writer writer, @NotNull final String lineSeparator, @NotNull final IntFunction<String> lineStart,
+            @NotNull final String lineEnd) {
+        this(writer, CHUNK_SIZE + CHUNK_SIZE / 4, lineSeparator, null, lineStart, lineEnd);
+    }
+
+    private SvgTextBuilder(@Nullable final Writer writer, final int capacity, @NotNull final String lineSeparator,
+            @Nullable final String lineStart, @Nullable final IntFunction<String> compactLineStart,
+            @Nullable final String compactLineEnd) {
+        super();
+        Utils4J.checkNotEmpty("lineSeparator", lineSeparator);
+        this.writer = writer;
+        this.sb = new StringBuilder(capacity);
+        this.lineSeparator = lineSeparator;
+        this.lineSeparatorEnd = lineSeparator.charAt(lineSeparator.length() - 1);
+        this.lineStart = lineStart;
+        this.compactLineStart = compactLineStart;
+        this.compactLineEnd = compactLineEnd;
+        this.lineOpenPos = -1;
+        this.pendingLines = 1;
+        if (lineStart != null) {
+            sb.append(lineStart);
+        }
+    }
+
+    /**
+     * Determines if the builder is in compact mode.
+     *
+     * @return TRUE if every non-empty line is enclosed in one line markup.
+     */
+    boolean isCompact() {
+        return compactLineStart != null;
+    }
+
+    /**
+     * Appends a part of the text.
+     *
+     * @param text
+     *            Text.
+     * @param start
+     *            Start position (inclusive).
+     * @param end
+     *            End position (exclusive).
+     *
+     * @throws IOException
+     *             Error writing to the writer.
+     */
+    void appendText(@NotNull final CharSequence text, final int start, final int end) throws IOException {
+        if (compactLineStart != null) {
+            appendCompact(text, start, end);
+            return;
+        }
+        if (lineStart == null) {
+            sb.append(text, start, end);
+            flushChunk();
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            final char ch = text.charAt(i);
+            if (ch == '\t') {
+                sb.append(TAB);
+            } else {
+                sb.append(ch);
+                if (ch == lineSeparatorEnd && endsWithLineSeparator()) {
+                    sb.append(lineStart);
+                }
+            }
+            if (sb.length() >= CHUNK_SIZE) {
+                flushChunk();
+            }
+        }
+    }
+
+    /**
+     * Appends markup. Markup is expected to contain neither tabs nor line separators.
+     *
+     * @param markup
+     *            Markup to append.
+     *
+     * @throws IOException
+     *             Error writing to the writer.
+     */
+    void appendMarkup(@NotNull final String markup) throws IOException {
+        if (compactLineStart != null && !lineOpen) {
+            openLine();
+        }
+        sb.append(markup);
+        flushChunk();
+    }
+
+    private void appendCompact(final CharSequence text, final int start, final int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            final char ch = text.charAt(i);
+            if (!lineOpen) {
+                openLine();
+            }
+            if (ch == '\t') {
+                sb.append(TAB);
+            } else {
+                sb.append(ch);
+                if (ch == lineSeparatorEnd && endsWithLineSeparator()) {
+                    closeLine();
+                }
+            }
+            if (sb.length() >= CHUNK_SIZE) {
+                flushChunk();
+            }
+        }
+    }
+
+    private void openLine() {
+        final String markup = compactLineStart.apply(pendingLines);
+        lineOpen = true;
+        lineOpenPos = sb.length();
+        lineOpenLength = markup.length();
+        sb.append(markup);
+    }
+
+    /**
+     * Ends the line after the line separator was appended. An empty line is removed again and only counted.
+     */
+    private void closeLine() {
+        if (lineOpenPos >= 0 && sb.length() - lineOpenPos == lineOpenLength + lineSeparator.length()) {
+            sb.setLength(lineOpenPos);
+            pendingLines++;
+        } else {
+            sb.setLength(sb.length() - lineSeparator.length());
+            sb.append(compactLineEnd);
+            sb.append(lineSeparator);
+            pendingLines = 1;
+        }
+        lineOpen = false;
+        lineOpenPos = -1;
+    }
+
+    /**
+     * Ends the last line. Must be called after the last text was appended. Does nothing if not in compact mode.
+     */
+    void finish() {
+        if (lineOpen) {
+            sb.append(compactLineEnd);
+            lineOpen = false;
+            lineOpenPos = -1;
+        }
+    }
+
+    /**
+     * Passes all content to the writer. Does nothing if there is no writer.
+     *
+     * @throws IOException
+     *             Error writing to the writer.
+     */
+    void flush() throws IOException {
+        if (writer != null) {
+            write(sb.length());
+            // The start markup of the current line was written, so the line is kept even if it stays empty
+            lineOpenPos = -1;
+        }
+    }
+
+    /**
+     * Passes the content to the writer if the chunk is full. The end of the content is kept as long as it may be the beginning
+     * of a line separator.
+     */
+    private void flushChunk() throws IOException {
+        if (writer != null && sb.length() >= CHUNK_SIZE) {
+            int count = sb.length() - (lineSeparator.length() - 1);
+            if (lineOpenPos >= 0) {
+                if (sb.length() - lineOpenPos < lineOpenLength + lineSeparator.length()) {
+                    // The line may still turn out to be empty, so its start markup must stay removable
+                    count = Math.min(count, lineOpenPos);
+                } else {
+                    lineOpenPos = -1;
+                }
+            }
+            write(count);
+            if (lineOpenPos >= 0) {
+                lineOpenPos -= count;
+            }
+        }
+    }
+
+    private void write(final int count) throws IOException {
+        if (chunk == null || chunk.length < count) {
+            chunk = new char[Math.max(count, CHUNK_SIZE)];
+        }
+        sb.getChars(0, count, chunk, 0);
+        writer.write(chunk, 0, count);
+        sb.delete(0, count);
+    }
+
+    /**
+     * Determines if markup can be appended with {@link #appendMarkup(String)}.
+     *
+     * @param markup
+     *            Markup to test.
+     *
+     * @return TRUE if the markup contains no tabs and no characters of the line separator.
+     */
+    boolean isPlain(@NotNull final String markup) {
+        if (markup.indexOf('\t') >= 0) {
+            return false;
+        }
+        for (int i = 0; i < lineSeparator.length(); i++) {
+            if (markup.indexOf(lineSeparator.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean endsWithLineSeparator() {
+        final int offset = sb.length() - lineSeparator.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < lineSeparator.length() - 1; i++) {
+            if (sb.charAt(offset + i) != lineSeparator.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the content that was not passed to the writer yet. Without writer this is the complete content.
+     *
+     * @return Content.
+     */
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,380 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache for the positions of the elements found in a source. The result of a tokenization is stored in a directory, one
+ * compact binary file per source. The name of the file is the hash of the prepared source text and the element definitions, so
+ * a source that did not change is rendered without searching the elements again, even if the SVG files were deleted.<br>
+ * <br>
+ * If the files exceed the maximum size, the least recently used ones are deleted. An instance can be shared by any number of
+ * concurrent conversions. Unreadable cache files are treated as missing.
+ */
+public final class TokenCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenCache.class);
+
+    /** Default maximum size of all cache files in bytes. */
+    public static final long DEFAULT_MAX_SIZE = 100L * 1024 * 1024;
+
+    private static final String EXTENSION = ".tokens";
+
+    private static final int MAGIC = 0x43325354;
+
+    private static final int VERSION = 1;
+
+    private final File dir;
+
+    private final long maxSize;
+
+    private final AtomicLong size;
+
+    private final AtomicLong hits;
+
+    private final AtomicLong misses;
+
+    /**
+     * Constructor with default maximum size.
+     * 
+     * @param dir
+     *            Directory for the cache files. Created if it does not exist.
+     */
+    public TokenCache(@NotNull final File dir) {
+        this(dir, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor with all data.
+     * 
+     * @param dir
+     *            Directory for the cache files. Created if it does not exist.
+     * @param maxSize
+     *            Maximum size of all cache files in bytes.
+     */
+    public TokenCache(@NotNull final File dir, final long maxSize) {
+        super();
+        Utils4J.checkNotNull("dir", dir);
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The argument 'maxSize' must be greater than 0, but was: " + maxSize);
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IllegalArgumentException("Failed to create the cache directory: " + dir);
+        }
+        Utils4J.checkValidDir(dir);
+        this.dir = dir;
+        this.maxSize = maxSize;
+        long total = 0;
+        for (final File file : cacheFiles()) {
+            total += file.length();
+        }
+        this.size = new AtomicLong(total);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Returns the cache directory.
+     * 
+     * @return Directory.
+     */
+    @NotNull
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * Returns the maximum size of all cache files.
+     * 
+     * @return Size in bytes.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the current size of all cache files.
+     * 
+     * @return Size in bytes.
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of tokenizations that were read from the cache since this instance was created.
+     * 
+     * @return Number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of tokenizations that were not found in the cache since this instance was created.
+     * 
+     * @return Number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the tokens of a text from the cache or tokenizes the text and adds the result to the cache.
+     * 
+     * @param config
+     *            Configuration with the elements to locate.
+     * @param text
+     *            Prepared text to search.
+     * 
+     * @return Ordered positions of the elements.
+     */
+    TokenStream tokenize(@NotNull final CompiledConfig config, @NotNull final String text) {
+        return tokenize(config.getElementsFingerprint(), config.getTokenizer(), text);
+    }
+
+    /**
+     * Returns the tokens of a text from the cache or tokenizes the text and adds the result to the cache.
+     * 
+     * @param fingerprint
+     *            Fingerprint of the element definitions of the tokenizer.
+     * @param tokenizer
+     *            Tokenizer to use if the text is not in the cache.
+     * @param text
+     *            Prepared text to search.
+     * 
+     * @return Ordered positions of the elements.
+     */
+    TokenStream tokenize(@NotNull final String fingerprint, @NotNull final Tokenizer tokenizer, @NotNull final String text) {
+        final File file = new File(dir, key(fingerprint, tokenizer.getLineSeparator(), text) + EXTENSION);
+        final TokenStream cached = read(file, text.length(), tokenizer.getElementCount());
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        final TokenStream tokens = tokenizer.tokenize(text);
+        write(file, text.length(), tokens);
+        return tokens;
+    }
+
+    /**
+     * Reads the tokens from a cache file.
+     * 
+     * @return Tokens or <code>null</code> if the file does not exist or is not valid.
+     */
+    @Nullable
+    private TokenStream read(final File file, final int textLength, final int elementCount) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION || readVarInt(in) != textLength) {
+                throw new IOException("Unknown format");
+            }
+            final int count = readVarInt(in);
+            if (count > textLength) {
+                // Checked before allocating, so a broken file cannot exhaust the memory
+                throw new IOException("Invalid token count: " + count);
+            }
+            final TokenStream tokens = new TokenStream(count);
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                start += readVarInt(in);
+                final int end = start + readVarInt(in);
+                final int element = readVarInt(in);
+                if (end > textLength || element >= elementCount) {
+                    throw new IOException("Invalid token: start=" + start + ", end=" + end + ", element=" + element);
+                }
+                tokens.add(start, end, element);
+            }
+            if (in.read() != -1) {
+                throw new IOException("Unexpected data after the last token");
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return tokens;
+        } catch (final IOException | RuntimeException ex) {
+            LOG.warn("Ignoring invalid cache file: " + file, ex);
+            delete(file);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the tokens to a temporary file and moves it to the final name, so concurrent readers never see a partial file.
+     */
+    private void write(final File file, final int textLength, final TokenStream tokens) {
+        if (tokens.size() > textLength) {
+            // Only possible with elements that match empty text - Such a file would be rejected when reading it
+            return;
+        }
+        File tmpFile = null;
+        try {
+            tmpFile = File.createTempFile("tokens", ".tmp", dir);
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                writeVarInt(out, textLength);
+                writeVarInt(out, tokens.size());
+                int start = 0;
+                for (int i = 0; i < tokens.size(); i++) {
+                    // Tokens are ordered by start position, so the difference to the previous start is never negative
+                    writeVarInt(out, tokens.getStart(i) - start);
+                    start = tokens.getStart(i);
+                    writeVarInt(out, tokens.getEnd(i) - start);
+                    writeVarInt(out, tokens.getElement(i));
+                }
+            }
+            final long length = tmpFile.length();
+            final long replaced = file.length();
+            Code2SvgUtils.replace(tmpFile.toPath(), file.toPath());
+            tmpFile = null;
+            if (size.addAndGet(length - replaced) > maxSize) {
+                evict();
+            }
+        } catch (final IOException ex) {
+            // The cache is an optimization only - The conversion does not fail
+            LOG.warn("Failed to write cache file: " + file, ex);
+        } finally {
+            if (tmpFile != null) {
+                delete(tmpFile);
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the size is below the maximum.
+     */
+    private synchronized void evict() {
+        if (size.get() <= maxSize) {
+            return;
+        }
+        final List<File> files = cacheFiles();
+        final long[] lastModified = new long[files.size()];
+        final Integer[] order = new Integer[files.size()];
+        long total = 0;
+        for (int i = 0; i < files.size(); i++) {
+            lastModified[i] = files.get(i).lastModified();
+            order[i] = i;
+            total += files.get(i).length();
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+        for (final Integer i : order) {
+            if (total <= maxSize) {
+                break;
+            }
+            final File file = files.get(i);
+            final long length = file.length();
+            if (delete(file)) {
+                total -= length;
+            }
+        }
+        size.set(total);
+        LOG.debug("Evicted cache files - size={}", total);
+    }
+
+    private List<File> cacheFiles() {
+        final File[] files = dir.listFiles((d, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    private static boolean delete(final File file) {
+        try {
+            return Files.deleteIfExists(file.toPath());
+        } catch (final IOException ex) {
+            LOG.warn("Failed to delete cache file: " + file, ex);
+            return false;
+        }
+    }
+
+    private static void writeVarInt(final DataOutputStream out, final int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarInt(final DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Negative value");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Variable length integer too long");
+    }
+
+    /**
+     * Returns the name of the cache file for a text.
+     * 
+     * @param fingerprint
+     *            Fingerprint of the element definitions.
+     * @param lineSeparator
+     *            Line separator used to split the elements that span multiple lines.
+     * @param text
+     *            Prepared text.
+     * 
+     * @return Hex encoded SHA-256 hash.
+     */
+    static String key(@NotNull final String fingerprint, @NotNull final String lineSeparator, @NotNull final String text) {
+        // The length keeps the separator apart from a text that starts with the same characters
+        final byte[] separator = lineSeparator.getBytes(StandardCharsets.UTF_8);
+        return Code2SvgUtils.sha256(fingerprint.getBytes(StandardCharsets.US_ASCII), new byte[] { (byte) separator.length }, separator,
+                text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        return "TokenCache [dir=" + dir + ", maxSize=" + maxSize + ", size=" + size + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Creates an output from a tokenized source.
+ */
+public interface TokenRenderer {
+
+    /**
+     * Writes the output for a source.
+     * 
+     * @param source
+     *            Tokenized source to render.
+     * @param writer
+     *            Writer for the output. It is not flushed or closed.
+     * 
+     * @throws IOException
+     *             Error writing the output.
+     */
+    public void render(@NotNull TokenizedSource source, @NotNull Writer writer) throws IOException;
+
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Positions of the elements found in a text. Every token is a (start, end, element index) triple stored in primitive arrays. The
+ * tokens are ordered by start position and, for tokens with the same start, by descending end position. The element index is the
+ * position of the element in the list of elements of the configuration. The stream is only changed while it is created, so it can
+ * be read by any number of threads afterwards.
+ */
+public final class TokenStream {
+
+    private int[] starts;
+
+    private int[] ends;
+
+    private int[] elements;
+
+    private int size;
+
+    /**
+     * Constructor with initial capacity.
+     *
+     * @param capacity
+     *            Number of tokens the stream can hold before it has to grow.
+     */
+    TokenStream(final int capacity) {
+        super();
+        final int cap = Math.max(capacity, 1);
+        this.starts = new int[cap];
+        this.ends = new int[cap];
+        this.elements = new int[cap];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of tokens.
+     *
+     * @return Size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the start position of a token.
+     *
+     * @param index
+     *            Index of the token.
+     *
+     * @return Start position in the text (inclusive).
+     */
+    public int getStart(final int index) {
+        return starts[index];
+    }
+
+    /**
+     * Returns the end position of a token.
+     *
+     * @param index
+     *            Index of the token.
+     *
+     * @return End position in the text (exclusive).
+     */
+    public int getEnd(final int index) {
+        return ends[index];
+    }
+
+    /**
+     * Returns the index of the element a token belongs to.
+     *
+     * @param index
+     *            Index of the token.
+     *
+     * @return Index of the element in the configuration.
+     */
+    public int getElement(final int index) {
+        return elements[index];
+    }
+
+    /**
+     * Returns the indexes of all elements that have at least one token.
+     *
+     * @return New set with one bit per element index that occurs in the stream.
+     */
+    BitSet usedElements() {
+        final BitSet used = new BitSet();
+        for (int i = 0; i < size; i++) {
+            used.set(elements[i]);
+        }
+        return used;
+    }
+
+    /**
+     * Appends a token. The caller is responsible for adding the tokens in the correct order.
+     *
+     * @param start
+     *            Start position (inclusive).
+     * @param end
+     *            End position (exclusive).
+     * @param element
+     *            Index of the element.
+     */
+    void add(final int start, final int end, final int element) {
+        if (size == starts.length) {
+            final int cap = size * 2;
+            starts = Arrays.copyOf(starts, cap);
+            ends = Arrays.copyOf(ends, cap);
+            elements = Arrays.copyOf(elements, cap);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        elements[size] = element;
+        size++;
+    }
+
+    /**
+     * Merges this and another ordered stream into a new one. Tokens of this stream come first if two tokens have the same
+     * position.
+     *
+     * @param other
+     *            Stream to merge with this one.
+     *
+     * @return New ordered stream with the tokens of both streams.
+     */
+    TokenStream merge(final TokenStream other) {
+        final TokenStream result = new TokenStream(size + other.size);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && !before(other, j, this, i))) {
+                result.add(starts[i], ends[i], elements[i]);
+                i++;
+            } else {
+                result.add(other.starts[j], other.ends[j], other.elements[j]);
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private static boolean before(final TokenStream a, final int i, final TokenStream b, final int j) {
+        if (a.starts[i] != b.starts[j]) {
+            return a.starts[i] < b.starts[j];
+        }
+        return a.ends[i] > b.ends[j];
+    }
+
+}
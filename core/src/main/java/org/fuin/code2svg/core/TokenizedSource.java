@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Result of locating the elements in a source. The positions of the tokens refer to the prepared text, which is the source without
+ * the inline configuration, escaped for XML and with the character entities replaced. The configuration is the one that was used
+ * for the source, including the values of the file and inline configuration. Instances are immutable and can be rendered any
+ * number of times.
+ */
+public final class TokenizedSource {
+
+    private final CompiledConfig config;
+
+    private final String text;
+
+    private final TokenStream tokens;
+
+    private final int[] lineColumns;
+
+    private final int columns;
+
+    /**
+     * Constructor with all data.
+     * 
+     * @param config
+     *            Configuration used for the source.
+     * @param text
+     *            Prepared text.
+     * @param tokens
+     *            Tokens found in the prepared text.
+     * @param lineColumns
+     *            Displayed width of every line of the text in characters.
+     */
+    TokenizedSource(@NotNull final CompiledConfig config, @NotNull final String text, @NotNull final TokenStream tokens,
+            @NotNull final int[] lineColumns) {
+        super();
+        Utils4J.checkNotNull("config", config);
+        Utils4J.checkNotNull("text", text);
+        Utils4J.checkNotNull("tokens", tokens);
+        Utils4J.checkNotNull("lineColumns", lineColumns);
+        this.config = config;
+        this.text = text;
+        this.tokens = tokens;
+        this.lineColumns = lineColumns;
+        int max = 0;
+        for (final int lineColumn : lineColumns) {
+            max = Math.max(max, lineColumn);
+        }
+        this.columns = max;
+    }
+
+    /**
+     * Returns the configuration used for the source.
+     * 
+     * @return Configuration with the file and inline configuration applied.
+     */
+    @NotNull
+    public CompiledConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the same text and tokens with another configuration.
+     * 
+     * @param config
+     *            Configuration to use for the source.
+     * 
+     * @return This instance if the configuration is the same or a copy with the other configuration.
+     */
+    @NotNull
+    TokenizedSource withConfig(@NotNull final CompiledConfig config) {
+        Utils4J.checkNotNull("config", config);
+        if (config == this.config) {
+            return this;
+        }
+        return new TokenizedSource(config, text, tokens, lineColumns);
+    }
+
+    /**
+     * Returns the prepared text the token positions refer to.
+     * 
+     * @return XML escaped text.
+     */
+    @NotNull
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the tokens.
+     * 
+     * @return Ordered positions of the elements.
+     */
+    @NotNull
+    public TokenStream getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Returns the number of lines.
+     * 
+     * @return Lines of the text.
+     */
+    public int getLines() {
+        return lineColumns.length;
+    }
+
+    /**
+     * Returns the width of the longest line as it is displayed. Escaped characters and character entities count as one character
+     * and a tab as four.
+     * 
+     * @return Maximum number of characters per line.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the element a token belongs to.
+     * 
+     * @param index
+     *            Index of the token.
+     * 
+     * @return Element.
+     */
+    @NotNull
+    public Element getElement(final int index) {
+        return config.getElements().get(tokens.getElement(index));
+    }
+
+    /**
+     * Returns the text of a token.
+     * 
+     * @param index
+     *            Index of the token.
+     * 
+     * @return Part of the prepared text.
+     */
+    @NotNull
+    public String getText(final int index) {
+        return text.substring(tokens.getStart(index), tokens.getEnd(index));
+    }
+
+    /**
+     * Splits the source into pages with a fixed number of lines. The elements are not searched again: Tokens that span a page
+     * boundary, like a multi-line comment, are cut at the line separator and continued on the next page. The line separator at
+     * the end of a page is not part of any page.
+     * 
+     * @param linesPerPage
+     *            Maximum number of lines per page.
+     * 
+     * @return Pages in the order of the text. There is always at least one page.
+     */
+    @NotNull
+    public List<TokenizedSource> split(final int linesPerPage) {
+        if (linesPerPage < 1) {
+            throw new IllegalArgumentException("The argument 'linesPerPage' must be greater than 0, but was: " + linesPerPage);
+        }
+        final String lineSeparator = Code2Svg.LINE_SEPARATOR;
+        final List<TokenizedSource> pages = new ArrayList<>();
+        // Tokens that started on a previous page and continue on the current one
+        List<Integer> carried = new ArrayList<>();
+        int next = 0;
+        int pageStart = 0;
+        int firstLine = 0;
+        while (true) {
+            int pageEnd = text.length();
+            int nextStart = text.length();
+            int pos = pageStart;
+            for (int line = 0; line < linesPerPage; line++) {
+                final int idx = text.indexOf(lineSeparator, pos);
+                if (idx < 0) {
+                    pageEnd = text.length();
+                    nextStart = text.length();
+                    break;
+                }
+                pageEnd = idx;
+                pos = idx + lineSeparator.length();
+                nextStart = pos;
+            }
+            final boolean last = nextStart >= text.length();
+            final TokenStream carriedTokens = new TokenStream(carried.size() + 1);
+            final TokenStream ownTokens = new TokenStream(16);
+            final List<Integer> carry = new ArrayList<>();
+            for (final int i : carried) {
+                addClipped(carriedTokens, carry, i, pageStart, pageEnd, nextStart, last);
+            }
+            while (next < tokens.size() && tokens.getStart(next) < nextStart) {
+                addClipped(ownTokens, carry, next, pageStart, pageEnd, nextStart, last);
+                next++;
+            }
+            // Carried tokens start at the beginning of the page, so tokens of the page starting there may have to come first
+            final TokenStream pageTokens = carriedTokens.merge(ownTokens);
+            final int lastLine = Math.min(firstLine + linesPerPage, lineColumns.length);
+            pages.add(new TokenizedSource(config, text.substring(pageStart, pageEnd), pageTokens,
+                    Arrays.copyOfRange(lineColumns, Math.min(firstLine, lastLine), lastLine)));
+            if (last) {
+                return pages;
+            }
+            carried = carry;
+            pageStart = nextStart;
+            firstLine = lastLine;
+        }
+    }
+
+    private void addClipped(final TokenStream pageTokens, final List<Integer> carry, final int index, final int pageStart,
+            final int pageEnd, final int nextStart, final boolean last) {
+        final int start = tokens.getStart(index);
+        final int end = tokens.getEnd(index);
+        final int clippedStart = Math.max(Math.min(start, pageEnd), pageStart);
+        final int clippedEnd = Math.max(Math.min(end, pageEnd), pageStart);
+        if (clippedStart < clippedEnd || (start == end && start >= pageStart && start <= pageEnd)) {
+            pageTokens.add(clippedStart - pageStart, clippedEnd - pageStart, tokens.getElement(index));
+        }
+        if (!last && end > nextStart) {
+            carry.add(index);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TokenizedSource [length=" + text.length() + ", tokens=" + tokens.size() + ", lines=" + getLines() + ", columns="
+                + columns + "]";
+    }
+
+}
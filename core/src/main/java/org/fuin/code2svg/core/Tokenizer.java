@@ -0,0 +1,457 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Locates the elements in a text and tags them with their SVG markup.<br>
+ * <br>
+ * Every element scans the original text exactly once. Matches are resolved by the order of the elements in the configuration: A
+ * match is only accepted if it does not overlap or touch the area already claimed by a previous element. An element claims the
+ * text of a line from its first tag up to the last tag on that line, which is the same area the former "tag and re-scan" approach
+ * protected. The text is tagged in a final pass, so it is never rewritten between elements.
+ */
+final class Tokenizer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Tokenizer.class);
+
+    private static final int END_TAG = 0;
+
+    private static final int EMPTY_TAG = 1;
+
+    private static final int CONTINUED_TAG = 2;
+
+    private static final int START_TAG = 3;
+
+    private final List<Element> elements;
+
+    private final String lineSeparator;
+
+    private final String[] startTags;
+
+    private final String[] endTags;
+
+    private final ElementMatcherFactory[] matchers;
+
+    /**
+     * Constructor with all mandatory data. The elements are compiled, so later changes of the elements have no effect.
+     *
+     * @param elements
+     *            Elements to locate. The order defines which element wins if matches overlap.
+     * @param lineSeparator
+     *            Line separator used to split tags that span multiple lines.
+     */
+    Tokenizer(@NotNull final List<Element> elements, @NotNull final String lineSeparator) {
+        super();
+        Utils4J.checkNotNull("elements", elements);
+        Utils4J.checkNotEmpty("lineSeparator", lineSeparator);
+        if (elements.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Too many elements: " + elements.size());
+        }
+        this.elements = elements;
+        this.lineSeparator = lineSeparator;
+        this.startTags = new String[elements.size()];
+        this.endTags = new String[elements.size()];
+        this.matchers = new ElementMatcherFactory[elements.size()];
+        for (int i = 0; i < elements.size(); i++) {
+            startTags[i] = elements.get(i).getSvgStartTag();
+            endTags[i] = elements.get(i).getSvgEndTag();
+            matchers[i] = ElementMatcherFactory.compile(elements.get(i));
+        }
+    }
+
+    /**
+     * Returns the number of elements to locate.
+     *
+     * @return Number of elements.
+     */
+    int getElementCount() {
+        return elements.size();
+    }
+
+    /**
+     * Returns the line separator used to split tags that span multiple lines.
+     *
+     * @return Line separator.
+     */
+    String getLineSeparator() {
+        return lineSeparator;
+    }
+
+    /**
+     * Locates all elements in the text.
+     *
+     * @param text
+     *            Text to search.
+     *
+     * @return Ordered positions of the elements.
+     */
+    TokenStream tokenize(@NotNull final String text) {
+        final int[] terminators = lineTerminators(text);
+        final int[] separators = separators(text, lineSeparator);
+        final Fragments fragments = new Fragments();
+        TokenStream tokens = new TokenStream(16);
+        SpanIndex claimed = new SpanIndex(1);
+        for (int i = 0; i < elements.size(); i++) {
+            final TokenStream found = find(text, i, claimed);
+            tokens = tokens.merge(found);
+            if (i < elements.size() - 1) {
+                fragments.addAll(found, separators, lineSeparator.length());
+                claimed = fragments.claimed(terminators);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Inserts the SVG tags for the given tokens into the text.
+     *
+     * @param text
+     *            Text the tokens were found in.
+     * @param tokens
+     *            Tokens to render.
+     *
+     * @return Tagged text.
+     */
+    String render(@NotNull final String text, @NotNull final TokenStream tokens) {
+        final SvgTextBuilder out = new SvgTextBuilder(text.length() + tokens.size() * 32, lineSeparator, null);
+        try {
+            render(text, tokens, out);
+        } catch (final IOException ex) {
+            // Never happens as there is no writer
+            throw new IllegalStateException(ex);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Inserts the SVG tags for the given tokens into the text and appends the result. Tags at the same position are written in the
+     * order the former "tag and re-scan" approach created them: End tags first, then the start tags of tokens continued after a
+     * line separator and finally the start tags of new tokens in the order of the elements.<br>
+     * <br>
+     * If the buffer is in compact mode, tags of empty tokens are omitted and an end tag that is directly followed by a start tag
+     * of the same element is merged with it, so adjacent tokens of the same element share one tag.
+     *
+     * @param text
+     *            Text the tokens were found in.
+     * @param tokens
+     *            Tokens to render.
+     * @param out
+     *            Buffer to append the tagged text to.
+     *
+     * @throws IOException
+     *             Error writing the tagged text.
+     */
+    void render(@NotNull final String text, @NotNull final TokenStream tokens, @NotNull final SvgTextBuilder out) throws IOException {
+        final boolean[] plainStart = new boolean[startTags.length];
+        final boolean[] plainEnd = new boolean[endTags.length];
+        for (int i = 0; i < startTags.length; i++) {
+            plainStart[i] = out.isPlain(startTags[i]);
+            plainEnd[i] = out.isPlain(endTags[i]);
+        }
+        final boolean compact = out.isCompact();
+        final long[] tags = tags(text, tokens);
+        int pos = 0;
+        int merged = -1;
+        for (int i = 0; i < tags.length; i++) {
+            final long tag = tags[i];
+            final int tagPos = (int) (tag >>> 32);
+            out.appendText(text, pos, tagPos);
+            pos = tagPos;
+            final int kind = (int) (tag >>> 16) & 0xFFFF;
+            final int value = (int) tag & 0xFFFF;
+            if (compact && (kind == EMPTY_TAG || i == merged)) {
+                continue;
+            }
+            if (compact && kind == END_TAG) {
+                final int next = nextNonEmpty(tags, i + 1, tagPos);
+                if (next >= 0 && ((int) (tags[next] >>> 16) & 0xFFFF) == START_TAG
+                        && ((int) tags[next] & 0xFFFF) == 0xFFFF - value) {
+                    merged = next;
+                    continue;
+                }
+            }
+            if (kind == END_TAG) {
+                append(out, endTags[0xFFFF - value], plainEnd[0xFFFF - value]);
+            } else if (kind == EMPTY_TAG) {
+                append(out, startTags[value], plainStart[value]);
+                append(out, endTags[value], plainEnd[value]);
+            } else {
+                append(out, startTags[value], plainStart[value]);
+            }
+        }
+        out.appendText(text, pos, text.length());
+    }
+
+    /**
+     * Locates all elements in the text and inserts the SVG tags.
+     *
+     * @param text
+     *            Text to tag.
+     *
+     * @return Tagged text.
+     */
+    String tag(@NotNull final String text) {
+        return render(text, tokenize(text));
+    }
+
+    private TokenStream find(final String text, final int index, final SpanIndex claimed) {
+        final Element el = elements.get(index);
+        LOG.debug("Tagging: {}", el.getName());
+        try {
+            final TokenStream found = new TokenStream(16);
+            final ElementMatcher m = matchers[index].matcher(text);
+            while (m.find()) {
+                if (claimed.isFree(m.start(), m.end())) {
+                    found.add(m.start(), m.end(), index);
+                }
+            }
+            return found;
+        } catch (final RuntimeException ex) {
+            LOG.error("Failed finding '{}' elements, source='{}'", el.getName(), text);
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates the ordered list of tags to insert. Each tag is encoded as a long with the position in the upper 32 bits, the kind of
+     * tag in the next 16 bits and the index of the element in the lower 16 bits. Sorting the values sorts the tags by position and
+     * kind.
+     */
+    private long[] tags(final String text, final TokenStream tokens) {
+        final int[] separators = separators(text, lineSeparator);
+        long[] tags = new long[tokens.size() * 2];
+        int count = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            final int end = tokens.getEnd(i);
+            final int element = tokens.getElement(i);
+            int start = tokens.getStart(i);
+            int kind = START_TAG;
+            int idx = nextSeparator(separators, start);
+            while (true) {
+                final boolean last = idx < 0 || idx + lineSeparator.length() > end;
+                final int fragmentEnd = last ? end : idx;
+                tags = ensureCapacity(tags, count + 2);
+                if (start == fragmentEnd) {
+                    tags[count++] = tag(start, EMPTY_TAG, element);
+                } else {
+                    tags[count++] = tag(start, kind, element);
+                    tags[count++] = tag(fragmentEnd, END_TAG, 0xFFFF - element);
+                }
+                if (last) {
+                    break;
+                }
+                start = idx + lineSeparator.length();
+                kind = CONTINUED_TAG;
+                idx = nextSeparator(separators, start);
+            }
+        }
+        final long[] result = Arrays.copyOf(tags, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the index of the next tag at the given position that is not an empty tag or -1 if there is none.
+     */
+    private static int nextNonEmpty(final long[] tags, final int from, final int pos) {
+        for (int i = from; i < tags.length && (int) (tags[i] >>> 32) == pos; i++) {
+            if (((int) (tags[i] >>> 16) & 0xFFFF) != EMPTY_TAG) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void append(final SvgTextBuilder out, final String markup, final boolean plain) throws IOException {
+        if (plain) {
+            out.appendMarkup(markup);
+        } else {
+            out.appendText(markup, 0, markup.length());
+        }
+    }
+
+    private static long tag(final int pos, final int kind, final int value) {
+        return ((long) pos << 32) | ((long) kind << 16) | value;
+    }
+
+    private static long[] ensureCapacity(final long[] tags, final int capacity) {
+        if (capacity <= tags.length) {
+            return tags;
+        }
+        return Arrays.copyOf(tags, Math.max(capacity, tags.length * 2));
+    }
+
+    /**
+     * Returns the positions of all line separators. Searching them once avoids scanning the rest of the text for every token, which
+     * would be quadratic if the text does not contain the line separator at all.
+     *
+     * @param text
+     *            Text to search.
+     * @param lineSeparator
+     *            Line separator.
+     *
+     * @return Ordered positions.
+     */
+    private static int[] separators(final String text, final String lineSeparator) {
+        int[] result = new int[16];
+        int count = 0;
+        int idx = text.indexOf(lineSeparator);
+        while (idx >= 0) {
+            if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            result[count++] = idx;
+            idx = text.indexOf(lineSeparator, idx + 1);
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the position of the first line separator at or after the given position, like
+     * <code>text.indexOf(lineSeparator, from)</code>.
+     *
+     * @param separators
+     *            Ordered positions of all line separators.
+     * @param from
+     *            Position to start at.
+     *
+     * @return Position or -1 if there is no more line separator.
+     */
+    private static int nextSeparator(final int[] separators, final int from) {
+        int idx = Arrays.binarySearch(separators, from);
+        if (idx < 0) {
+            idx = -idx - 1;
+        }
+        if (idx < separators.length) {
+            return separators[idx];
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the positions of all characters that end a line for the '.' of a regular expression.
+     *
+     * @param text
+     *            Text to search.
+     *
+     * @return Ordered positions.
+     */
+    private static int[] lineTerminators(final String text) {
+        int[] result = new int[16];
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            if (ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029') {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = i;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Line fragments of all tokens found so far. A token spanning multiple lines is tagged once per line, so each fragment gets its
+     * own start and end tag.
+     */
+    private static final class Fragments {
+
+        private int[] starts = new int[16];
+
+        private int[] ends = new int[16];
+
+        private int size;
+
+        void addAll(final TokenStream tokens, final int[] separators, final int separatorLength) {
+            for (int i = 0; i < tokens.size(); i++) {
+                int start = tokens.getStart(i);
+                final int end = tokens.getEnd(i);
+                int idx = nextSeparator(separators, start);
+                while (idx >= 0 && idx + separatorLength <= end) {
+                    add(start, idx);
+                    start = idx + separatorLength;
+                    idx = nextSeparator(separators, start);
+                }
+                add(start, end);
+            }
+        }
+
+        private void add(final int start, final int end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        /**
+         * Returns the claimed area per line. The area starts at the first start tag on a line that is followed by an end tag on the
+         * same line and stops at the last end tag of that line. A line in this sense is delimited by any character the '.' of a
+         * regular expression does not match. A fragment always belongs to the line it starts on, even if it contains such a
+         * character, like the '\r' of a CRLF text that is split at LF. Otherwise its start would not be claimed and a later
+         * element could overlap it.
+         */
+        SpanIndex claimed(final int[] terminators) {
+            final int lines = terminators.length + 1;
+            final int[] lastEnd = new int[lines];
+            final int[] firstStart = new int[lines];
+            Arrays.fill(lastEnd, -1);
+            Arrays.fill(firstStart, Integer.MAX_VALUE);
+            for (int i = 0; i < size; i++) {
+                final int line = line(terminators, starts[i]);
+                lastEnd[line] = Math.max(lastEnd[line], ends[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                final int line = line(terminators, starts[i]);
+                if (lastEnd[line] > starts[i] || ends[i] == starts[i]) {
+                    firstStart[line] = Math.min(firstStart[line], starts[i]);
+                }
+            }
+            final SpanIndex result = new SpanIndex(lines);
+            for (int line = 0; line < lines; line++) {
+                if (firstStart[line] != Integer.MAX_VALUE) {
+                    result.add(firstStart[line], Math.max(lastEnd[line], firstStart[line]));
+                }
+            }
+            return result;
+        }
+
+        private static int line(final int[] terminators, final int pos) {
+            final int idx = Arrays.binarySearch(terminators, pos);
+            if (idx >= 0) {
+                return idx;
+            }
+            return -idx - 1;
+        }
+
+    }
+
+}
@@ -191,6 +191,37 @@ public class Code2SvgConfigTest {
         assertThat(testee.findFor(new File("/foo/bar/def.ddd"))).isNull();
         assertThat(testee.findFor(new File("/tmp/def.ddd"))).isSameAs(fileConfig2);
 
+        // TEST
+        final FileConfig fileConfig3 = new FileConfig(".*/foo/bar/def\\.ddd", 300, 200);
+        testee.addFileConfig(fileConfig3);
+
+        // VERIFY
+        assertThat(testee.findFor(new File("/foo/bar/def.ddd"))).isSameAs(fileConfig3);
+
+    }
+
+    @Test
+    public void testCompile() {
+
+        // PREPARE
+        final RegExprElement el = new RegExprElement("string", "fill: blue", "\".*?\"");
+        final Code2SvgConfig testee = new Code2SvgConfig.Builder().fileExtension(".ddd").addElement(el).build();
+
+        // TEST
+        final CompiledConfig first = testee.compile();
+        final CompiledConfig second = testee.compile();
+        testee.addElement(new RegExprElement("other", "fill: red", "x"));
+        final CompiledConfig withElement = testee.compile();
+        testee.addFileConfig(new FileConfig(".*/abc\\.ddd", 800, 600));
+        final CompiledConfig withFileConfig = testee.compile();
+
+        // VERIFY
+        assertThat(second).isSameAs(first);
+        assertThat(first.getElements()).hasSize(1);
+        assertThat(withElement.getElements()).hasSize(2);
+        assertThat(withFileConfig).isNotSameAs(withElement);
+        assertThat(withFileConfig.getFileConfigs()).hasSize(1);
+
     }
 
     // CHECKSTYLE:ON
@@ -18,11 +18,17 @@
 package org.fuin.code2svg.core;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.fuin.utils4j.JaxbUtils;
@@ -76,6 +82,28 @@ public class Code2SvgTest {
 
     }
 
+    @Test
+    public void testConvertStream() throws IOException {
+
+        // PREPARE
+        final String configXml = Utils4J.readAsString(Code2Svg.class.getResource("/code2svg.xml"), "utf-8", 1024);
+        final Code2SvgConfig config = JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES);
+        final String expected = Utils4J.readAsString(Code2Svg.class.getResource("/Alpha3CountryCode.ddd.svg"), "utf-8", 1024)
+                .replaceAll("<title>.*</title>\\R|<desc>.*</desc>\\R", "");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        final Code2Svg testee = new Code2Svg();
+
+        // TEST
+        try (final InputStream in = Code2Svg.class.getResourceAsStream("/Alpha3CountryCode.ddd")) {
+            testee.convert(config, in, out);
+        }
+
+        // VERIFY
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(expected);
+
+    }
+
     @Test
     public void testConvert() throws IOException {
 
@@ -95,6 +123,283 @@ public class Code2SvgTest {
 
     }
 
+    @Test
+    public void testConvertDirParallel() throws IOException {
+
+        // PREPARE
+        final URL url = Code2Svg.class.getResource("/code2svg.xml");
+        final String configXml = Utils4J.readAsString(url, "utf-8", 1024);
+        final Code2SvgConfig config = JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES);
+        final File baseDir = new File(Utils4J.getTempDir(), "code2svg-convert-dir");
+        FileUtils.deleteQuietly(baseDir);
+        final File srcDir = new File(baseDir, "src");
+        final File sequentialDir = new File(baseDir, "sequential");
+        final File parallelDir = new File(baseDir, "parallel");
+        final URL sourceUrl = Code2Svg.class.getResource("/Alpha3CountryCode.ddd");
+        for (int i = 0; i < 20; i++) {
+            FileUtils.copyURLToFile(sourceUrl, new File(srcDir, "dir" + (i % 3) + "/File" + i + ".ddd"));
+        }
+        final File badFile = new File(srcDir, "dir1/Bad.ddd");
+        FileUtils.write(badFile, "@code2svg:{bad}", StandardCharsets.UTF_8);
+        final File goodFile = new File(srcDir, "dir1/File1.ddd");
+
+        final Code2Svg testee = new Code2Svg();
+
+        // TEST
+        final ConvertDirResult result = testee.convertDir(config, srcDir, parallelDir, 4);
+
+        // VERIFY
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.getConverted()).hasSize(20);
+        assertThat(result.getConverted()).contains(goodFile);
+        assertThat(result.getFailures().keySet()).containsOnly(badFile);
+        assertThat(new File(parallelDir, "dir1/Bad.ddd.svg").exists()).isFalse();
+        for (final File file : result.getConverted()) {
+            final String path = Utils4J.getRelativePath(srcDir, file.getParentFile());
+            testee.convertFile(config, srcDir, file, sequentialDir);
+            final File expected = new File(new File(sequentialDir, path), file.getName() + ".svg");
+            final File actual = new File(new File(parallelDir, path), file.getName() + ".svg");
+            assertThat(actual).hasSameContentAs(expected);
+        }
+
+    }
+
+    @Test
+    public void testConvertFileSvgz() throws IOException {
+
+        // PREPARE
+        final File configFile = copy("/code2svg.xml", "code2svg.xml");
+        final File sourceFile = copy("/Alpha3CountryCode.ddd", "Alpha3CountryCode.ddd");
+        final File targetFile = new File(sourceFile.getParentFile(), sourceFile.getName() + ".svgz");
+        final File expectedTargetFile = copy("/Alpha3CountryCode.ddd.svg", "Alpha3CountryCode-expected.ddd.svg");
+        final String configXml = Utils4J.readAsString(url(configFile), "utf-8", 1024);
+        final Code2SvgConfig config = JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES);
+        targetFile.delete();
+
+        final Code2Svg testee = new Code2Svg.Builder().svgz(9).build();
+
+        // TEST
+        final boolean first = testee.convertFile(config, sourceFile.getParentFile(), sourceFile, sourceFile.getParentFile());
+        final boolean second = testee.convertFile(config, sourceFile.getParentFile(), sourceFile, sourceFile.getParentFile());
+
+        // VERIFY
+        assertThat(testee.getTargetExtension()).isEqualTo(".svgz");
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+        assertThat(targetFile.length()).isLessThan(expectedTargetFile.length() / 3);
+        try (final InputStream in = new GZIPInputStream(new FileInputStream(targetFile))) {
+            // The description contains the name of the target file
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(FileUtils
+                    .readFileToString(expectedTargetFile, StandardCharsets.UTF_8).replace(".ddd.svg</desc>", ".ddd.svgz</desc>"));
+        }
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSvgzInvalidLevel() {
+        new Code2Svg.Builder().svgz(10);
+    }
+
+    @Test
+    public void testConvertDirParallelRethrowsError() throws IOException {
+
+        // PREPARE
+        final Element failing = new AbstractElement("failing", "fill: red") {
+            @Override
+            public ElementMatcher matcher(final String text) {
+                return new ElementMatcher() {
+                    @Override
+                    public boolean find() {
+                        throw new AssertionError("Failed matching: " + text);
+                    }
+
+                    @Override
+                    public int start() {
+                        return 0;
+                    }
+
+                    @Override
+                    public int end() {
+                        return 0;
+                    }
+
+                    @Override
+                    public void appendReplacement(final StringBuffer sb, final String replacement) {
+                        // Not used
+                    }
+
+                    @Override
+                    public void appendTail(final StringBuffer sb) {
+                        // Not used
+                    }
+                };
+            }
+        };
+        final CompiledConfig config = new CompiledConfig(new Code2SvgConfig.Builder().fileExtension(".ddd").addElement(failing).build());
+        final File baseDir = new File(Utils4J.getTempDir(), "code2svg-convert-dir-error");
+        FileUtils.deleteQuietly(baseDir);
+        final File srcDir = new File(baseDir, "src");
+        FileUtils.write(new File(srcDir, "A.ddd"), "a", StandardCharsets.UTF_8);
+        FileUtils.write(new File(srcDir, "B.ddd"), "b", StandardCharsets.UTF_8);
+
+        // TEST
+        try {
+            new Code2Svg().convertDir(config, srcDir, new File(baseDir, "target"), 2);
+            fail("Expected the error of the worker");
+        } catch (final AssertionError ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).startsWith("Failed matching: ");
+        }
+
+    }
+
+    @Test
+    public void testConvertDirSharedCss() throws IOException {
+
+        // PREPARE
+        final URL url = Code2Svg.class.getResource("/code2svg.xml");
+        final String configXml = Utils4J.readAsString(url, "utf-8", 1024);
+        final CompiledConfig config = new CompiledConfig(JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES));
+        final File baseDir = new File(Utils4J.getTempDir(), "code2svg-convert-dir-css");
+        FileUtils.deleteQuietly(baseDir);
+        final File srcDir = new File(baseDir, "src");
+        final File targetDir = new File(baseDir, "target");
+        FileUtils.write(new File(srcDir, "a/b/Shared.ddd"), "@code2svg:{\"width\":100}\nx", StandardCharsets.UTF_8);
+        FileUtils.write(new File(srcDir, "Inline.ddd"), "@code2svg:{\"text-css\":\"font-size: 8pt\"}\nx", StandardCharsets.UTF_8);
+
+        final Code2Svg testee = new Code2Svg.Builder().sharedCss(true).build();
+
+        // TEST
+        final ConvertDirResult result = testee.convertDir(config, srcDir, targetDir, 2);
+
+        // VERIFY
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(FileUtils.readFileToString(new File(targetDir, Code2Svg.SHARED_CSS_FILE), StandardCharsets.UTF_8))
+                .isEqualTo(SvgRenderer.css(config));
+        final String shared = FileUtils.readFileToString(new File(targetDir, "a/b/Shared.ddd.svg"), StandardCharsets.UTF_8);
+        assertThat(shared).contains("<?xml-stylesheet type=\"text/css\" href=\"../../code2svg.css\"?>");
+        assertThat(shared).contains("width=\"100\"");
+        assertThat(shared).excludes("<style>");
+        final String inline = FileUtils.readFileToString(new File(targetDir, "Inline.ddd.svg"), StandardCharsets.UTF_8);
+        assertThat(inline).excludes("xml-stylesheet");
+        assertThat(inline).contains("text { font-size: 8pt }");
+
+    }
+
+    @Test
+    public void testConvertDirUnchanged() throws IOException {
+
+        // PREPARE
+        final URL url = Code2Svg.class.getResource("/code2svg.xml");
+        final String configXml = Utils4J.readAsString(url, "utf-8", 1024);
+        final Code2SvgConfig config = JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES);
+        final File baseDir = new File(Utils4J.getTempDir(), "code2svg-convert-dir-unchanged");
+        FileUtils.deleteQuietly(baseDir);
+        final File srcDir = new File(baseDir, "src");
+        final File targetDir = new File(baseDir, "target");
+        final URL sourceUrl = Code2Svg.class.getResource("/Alpha3CountryCode.ddd");
+        for (int i = 0; i < 3; i++) {
+            FileUtils.copyURLToFile(sourceUrl, new File(srcDir, "File" + i + ".ddd"));
+        }
+        final File changedFile = new File(srcDir, "File1.ddd");
+        final File unchangedTarget = new File(targetDir, "File0.ddd.svg");
+        final Code2Svg testee = new Code2Svg();
+        final ConvertDirResult first = testee.convertDir(config, srcDir, targetDir, 2);
+        final long lastModified = unchangedTarget.lastModified() - 10000;
+        unchangedTarget.setLastModified(lastModified);
+        FileUtils.write(changedFile, " ", StandardCharsets.UTF_8, true);
+
+        // TEST
+        final ConvertDirResult second = testee.convertDir(config, srcDir, targetDir, 2);
+
+        // VERIFY
+        assertThat(first.getWrittenCount()).isEqualTo(3);
+        assertThat(first.getUnchangedCount()).isEqualTo(0);
+        assertThat(second.getWrittenCount()).isEqualTo(1);
+        assertThat(second.getUnchangedCount()).isEqualTo(2);
+        assertThat(second.getUnchanged()).excludes(changedFile);
+        assertThat(unchangedTarget.lastModified()).isEqualTo(lastModified);
+        assertThat(targetDir.list()).hasSize(3);
+        assertThat(testee.convertFile(config, srcDir, changedFile, targetDir)).isFalse();
+
+    }
+
+    @Test
+    public void testConvertFilePages() throws IOException {
+
+        // PREPARE
+        final URL url = Code2Svg.class.getResource("/code2svg.xml");
+        final String configXml = Utils4J.readAsString(url, "utf-8", 1024);
+        final CompiledConfig config = new CompiledConfig(JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES));
+        final File baseDir = new File(Utils4J.getTempDir(), "code2svg-convert-pages");
+        FileUtils.deleteQuietly(baseDir);
+        final File srcDir = new File(baseDir, "src");
+        final File targetDir = new File(baseDir, "target");
+        final File srcFile = new File(srcDir, "Paged.ddd");
+        final String ls = Code2Svg.LINE_SEPARATOR;
+        FileUtils.write(srcFile, "a" + ls + "/* one" + ls + "two" + ls + "three */" + ls + "b", StandardCharsets.UTF_8);
+        final Code2Svg testee = new Code2Svg.Builder().pageLines(2).build();
+
+        // TEST
+        final boolean written = testee.convertFile(config, srcDir, srcFile, targetDir);
+
+        // VERIFY
+        assertThat(written).isTrue();
+        assertThat(testee.getTargetExtension()).isEqualTo(Code2Svg.INDEX_EXTENSION);
+        assertThat(new File(targetDir, "Paged.ddd.svg").exists()).isFalse();
+        assertThat(FileUtils.readFileToString(testee.getPageFile(srcDir, srcFile, targetDir, 1), StandardCharsets.UTF_8))
+                .contains("<tspan class=\"ml-comment\">/* one</tspan>").excludes("two");
+        assertThat(FileUtils.readFileToString(testee.getPageFile(srcDir, srcFile, targetDir, 2), StandardCharsets.UTF_8))
+                .contains("<tspan class=\"ml-comment\">two</tspan>").contains("<tspan class=\"ml-comment\">three */</tspan>")
+                .contains("(page 2 of 3)");
+        assertThat(FileUtils.readFileToString(testee.getPageFile(srcDir, srcFile, targetDir, 3), StandardCharsets.UTF_8))
+                .contains("</tspan>b").excludes("ml-comment\">");
+        final File indexFile = new File(targetDir, "Paged.ddd.html");
+        assertThat(FileUtils.readFileToString(indexFile, StandardCharsets.UTF_8)).contains("src=\"Paged.ddd.1.svg\"")
+                .contains("src=\"Paged.ddd.2.svg\"").contains("src=\"Paged.ddd.3.svg\"");
+        assertThat(testee.convertFile(config, srcDir, srcFile, targetDir)).isFalse();
+
+        // TEST
+        FileUtils.write(srcFile, "a", StandardCharsets.UTF_8);
+        testee.convertFile(config, srcDir, srcFile, targetDir);
+
+        // VERIFY
+        assertThat(targetDir.list()).containsOnly("Paged.ddd.1.svg", "Paged.ddd.html");
+        assertThat(FileUtils.readFileToString(indexFile, StandardCharsets.UTF_8)).excludes("Paged.ddd.2.svg");
+
+        // TEST & VERIFY
+        assertThat(testee.deleteTargetFiles(srcDir, srcFile, targetDir)).hasSize(2);
+        assertThat(targetDir.list()).isEmpty();
+
+    }
+
+    @Test
+    public void testConvertFilePagesHeight() throws IOException {
+
+        // PREPARE
+        final CompiledConfig config = new CompiledConfig(
+                new Code2SvgConfig.Builder().fileExtension(".ddd").width(200).height(101)
+                        .addElement(new NumberElement("number", "fill: red")).build());
+        final File baseDir = new File(Utils4J.getTempDir(), "code2svg-convert-pages-height");
+        FileUtils.deleteQuietly(baseDir);
+        final File srcDir = new File(baseDir, "src");
+        final File targetDir = new File(baseDir, "target");
+        final File srcFile = new File(srcDir, "Paged.ddd");
+        final String ls = Code2Svg.LINE_SEPARATOR;
+        FileUtils.write(srcFile, "a" + ls + "b" + ls + "c", StandardCharsets.UTF_8);
+        final Code2Svg testee = new Code2Svg.Builder().pageLines(2).build();
+
+        // TEST
+        testee.convertFile(config, srcDir, srcFile, targetDir);
+
+        // VERIFY
+        assertThat(FileUtils.readFileToString(testee.getPageFile(srcDir, srcFile, targetDir, 1), StandardCharsets.UTF_8))
+                .contains("width=\"200\" height=\"101\" ");
+        assertThat(FileUtils.readFileToString(testee.getPageFile(srcDir, srcFile, targetDir, 2), StandardCharsets.UTF_8))
+                .contains("width=\"200\" height=\"51\" ");
+
+    }
+
     private static File copy(final String fromResource, final String toFile) {
         try {
             final URL url = Code2Svg.class.getResource(fromResource);
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompiledConfig}.
+ */
+public class CompiledConfigTest {
+
+    // CHECKSTYLE:OFF
+
+    @Test
+    public final void testSnapshot() {
+
+        // PREPARE
+        final RegExprElement el = new RegExprElement("string", "fill: blue", "\".*?\"");
+        final Code2SvgConfig config = new Code2SvgConfig.Builder().fileExtension(".ddd").width(1).height(2).addElement(el).build();
+
+        // TEST
+        final CompiledConfig testee = new CompiledConfig(config);
+        config.addElement(new RegExprElement("other", "fill: red", "x"));
+
+        // VERIFY
+        assertThat(testee.getFileExtension()).isEqualTo(".ddd");
+        assertThat(testee.getWidth()).isEqualTo(1);
+        assertThat(testee.getHeight()).isEqualTo(2);
+        assertThat(testee.getTextCss()).isEqualTo(config.getTextCss());
+        assertThat(testee.getElements()).containsExactly(el);
+        assertThat(testee.getElementCss()).isEqualTo(".string { fill: blue }" + Code2Svg.LINE_SEPARATOR);
+
+    }
+
+    @Test
+    public final void testSnapshotOfElements() {
+
+        // PREPARE
+        final KeywordElement keyword = new KeywordElement("keyword", "fill: red", new ArrayList<>(Arrays.asList("label")));
+        final Code2SvgConfig config = new Code2SvgConfig.Builder().addElement(keyword).build();
+
+        // TEST
+        final CompiledConfig testee = new CompiledConfig(config);
+        keyword.getKeywords().add("base");
+
+        // VERIFY
+        assertThat(testee.getTokenizer().tag("label base")).isEqualTo("<tspan class=\"keyword\">label</tspan> base");
+        assertThat(new CompiledConfig(config).getTokenizer().tag("label base"))
+                .isEqualTo("<tspan class=\"keyword\">label</tspan> <tspan class=\"keyword\">base</tspan>");
+
+    }
+
+    @Test
+    public final void testForModel() {
+
+        // PREPARE
+        final RegExprElement el = new RegExprElement("string", "fill: blue", "\".*?\"");
+        final Code2SvgConfig config = new Code2SvgConfig.Builder().fileExtension(".ddd").width(1).height(2).addElement(el)
+                .addFileConfig(new FileConfig(".*/abc\\.ddd", 800, null)).build();
+        final CompiledConfig testee = new CompiledConfig(config);
+
+        // TEST
+        final CompiledConfig unchanged = testee.forModel(new File("/tmp/xyz.ddd"), "");
+        final CompiledConfig fileConfig = testee.forModel(new File("/tmp/abc.ddd"), "");
+        final CompiledConfig inline = testee.forModel(new File("/tmp/abc.ddd"),
+                ModelConfigParser.CODE2SVG_KEY + "{\"height\": 1000, \"text-css\": \"font-size: 8pt\"}");
+
+        // VERIFY
+        assertThat(unchanged).isSameAs(testee);
+        assertThat(fileConfig.getWidth()).isEqualTo(800);
+        assertThat(fileConfig.getHeight()).isEqualTo(2);
+        assertThat(inline.getWidth()).isEqualTo(800);
+        assertThat(inline.getHeight()).isEqualTo(1000);
+        assertThat(inline.getTextCss()).isEqualTo("font-size: 8pt");
+        assertThat(inline.getTokenizer()).isSameAs(testee.getTokenizer());
+        assertThat(inline.getElements()).containsExactly(el);
+
+    }
+
+    @Test
+    public final void testConcurrentConversions() throws Exception {
+
+        // PREPARE
+        final KeywordElement keyword = new KeywordElement("keyword", "fill: red", Arrays.asList("value-object", "label"));
+        final NumberElement number = new NumberElement("number", "fill: gray");
+        final Code2SvgConfig config = new Code2SvgConfig.Builder().addElement(keyword).addElement(number).build();
+        final CompiledConfig testee = new CompiledConfig(config);
+        final Code2Svg code2svg = new Code2Svg();
+        final List<String> models = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            models.add("value-object X" + i + " {\n    label \"" + i + "\" " + i + "\n}");
+        }
+        final List<String> expected = new ArrayList<>();
+        for (final String model : models) {
+            expected.add(code2svg.convert(config, model));
+        }
+
+        // TEST
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<String> actual = new ArrayList<>();
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (final String model : models) {
+                futures.add(executor.submit((Callable<String>) () -> code2svg.convert(testee, model)));
+            }
+            for (final Future<String> future : futures) {
+                actual.add(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // VERIFY
+        assertThat(actual).isEqualTo(expected);
+
+    }
+
+    // CHECKSTYLE:ON
+
+}
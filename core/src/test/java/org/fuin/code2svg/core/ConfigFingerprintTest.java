@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.fuin.utils4j.JaxbUtils;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConfigFingerprint}.
+ */
+public class ConfigFingerprintTest {
+
+    // CHECKSTYLE:OFF
+
+    private static Code2SvgConfig.Builder builder() {
+        return new Code2SvgConfig.Builder().fileExtension(".ddd").width(800).height(600)
+                .addFileConfig(new FileConfig(".*/abc\\.ddd", 400, null)).addElement(new NumberElement("number", "fill: red"))
+                .addElement(new KeywordElement("keyword", "fill: blue", Arrays.asList("a", "b")))
+                .addElement(new RegExprElement("string", "fill: green", "\".*?\""));
+    }
+
+    @Test
+    public final void testSameValues() {
+
+        // PREPARE
+        final Code2SvgConfig config = builder().build();
+        final String xml = JaxbUtils.marshal(config, Code2SvgUtils.JAXB_CLASSES);
+        final Code2SvgConfig copy = JaxbUtils.unmarshal(xml, Code2SvgUtils.JAXB_CLASSES);
+
+        // TEST & VERIFY
+        assertThat(config.getFingerprint()).hasSize(64);
+        assertThat(builder().build().getFingerprint()).isEqualTo(config.getFingerprint());
+        assertThat(copy.getFingerprint()).isEqualTo(config.getFingerprint());
+        assertThat(new CompiledConfig(config).getFingerprint()).isEqualTo(config.getFingerprint());
+
+    }
+
+    @Test
+    public final void testDifferentValues() {
+
+        final String fingerprint = builder().build().getFingerprint();
+
+        assertThat(builder().width(801).build().getFingerprint()).isNotEqualTo(fingerprint);
+        assertThat(builder().height(null).build().getFingerprint()).isNotEqualTo(fingerprint);
+        assertThat(builder().textCss("font-size: 8pt").build().getFingerprint()).isNotEqualTo(fingerprint);
+        assertThat(builder().fileExtension(".xyz").build().getFingerprint()).isNotEqualTo(fingerprint);
+        assertThat(builder().addFileConfig(new FileConfig("x", 1, 1)).build().getFingerprint()).isNotEqualTo(fingerprint);
+        assertThat(builder().addElement(new StringElement("str", "fill: blue")).build().getFingerprint())
+                .isNotEqualTo(fingerprint);
+        assertThat(new Code2SvgConfig.Builder().copy(builder().build())
+                .elements(Arrays.asList(new NumberElement("number", "fill: red"),
+                        new KeywordElement("keyword", "fill: blue", Arrays.asList("a", "c")),
+                        new RegExprElement("string", "fill: green", "\".*?\"")))
+                .build().getFingerprint()).isNotEqualTo(fingerprint);
+        assertThat(new Code2SvgConfig.Builder().copy(builder().build())
+                .elements(Arrays.asList(new NumberElement("number", "fill: black"),
+                        new KeywordElement("keyword", "fill: blue", Arrays.asList("a", "b")),
+                        new RegExprElement("string", "fill: green", "\".*?\"")))
+                .build().getFingerprint()).isNotEqualTo(fingerprint);
+
+    }
+
+    @Test
+    public final void testNoAmbiguity() {
+
+        final Code2SvgConfig ab = new Code2SvgConfig.Builder()
+                .addElement(new KeywordElement("keyword", "fill: blue", Arrays.asList("a", "b"))).build();
+        final Code2SvgConfig a_b = new Code2SvgConfig.Builder()
+                .addElement(new KeywordElement("keyword", "fill: blue", Arrays.asList("a;b"))).build();
+
+        assertThat(ab.getFingerprint()).isNotEqualTo(a_b.getFingerprint());
+
+    }
+
+    @Test
+    public final void testForModel() {
+
+        // PREPARE
+        final CompiledConfig testee = new CompiledConfig(builder().build());
+
+        // TEST
+        final CompiledConfig fileConfig = testee.forModel(new File("/tmp/abc.ddd"), "");
+        final CompiledConfig inline = testee.forModel(null, ModelConfigParser.CODE2SVG_KEY + "{\"width\": 400}");
+
+        // VERIFY
+        assertThat(fileConfig.getFingerprint()).isNotEqualTo(testee.getFingerprint());
+        assertThat(inline.getFingerprint()).isEqualTo(fileConfig.getFingerprint());
+        assertThat(fileConfig.getFingerprint()).isEqualTo(builder().width(400).build().getFingerprint());
+
+    }
+
+    // CHECKSTYLE:ON
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileConfigResolver}.
+ */
+public class FileConfigResolverTest {
+
+    // CHECKSTYLE:OFF
+
+    @Test
+    public final void testLiteral() {
+        assertThat(FileConfigResolver.literal(".*/abc\\.ddd", 2)).isEqualTo("/abc.ddd");
+        assertThat(FileConfigResolver.literal("/tmp/a\\Q.b*\\Ec\\\\", 0)).isEqualTo("/tmp/a.b*c\\");
+        assertThat(FileConfigResolver.literal("\\Q.x", 0)).isEqualTo(".x");
+        assertThat(FileConfigResolver.literal("", 0)).isEmpty();
+        assertThat(FileConfigResolver.literal(".*", 0)).isNull();
+        assertThat(FileConfigResolver.literal("a.ddd", 0)).isNull();
+        assertThat(FileConfigResolver.literal("a\\d", 0)).isNull();
+        assertThat(FileConfigResolver.literal("(?i)a", 0)).isNull();
+        assertThat(FileConfigResolver.literal("a|b", 0)).isNull();
+        assertThat(FileConfigResolver.literal("a\\", 0)).isNull();
+    }
+
+    @Test
+    public final void testFirstMatchWins() {
+
+        // PREPARE
+        final FileConfig regExpr = new FileConfig(".*/a.c\\.ddd", 1, 1);
+        final FileConfig suffix = new FileConfig(".*/abc\\.ddd", 2, 2);
+        final FileConfig exact = new FileConfig("/tmp/abc\\.ddd", 3, 3);
+        final FileConfig all = new FileConfig(".*", 4, 4);
+        final FileConfigResolver testee = new FileConfigResolver(Arrays.asList(regExpr, suffix, exact, all));
+        final FileConfigResolver reversed = new FileConfigResolver(Arrays.asList(exact, suffix, regExpr));
+
+        // TEST & VERIFY
+        assertThat(testee.findFor(null)).isNull();
+        assertThat(testee.findFor(new File("/tmp/abc.ddd"))).isSameAs(regExpr);
+        assertThat(testee.findFor(new File("/tmp/xyz.ddd"))).isSameAs(all);
+        assertThat(reversed.findFor(new File("/tmp/abc.ddd"))).isSameAs(exact);
+        assertThat(reversed.findFor(new File("/x/abc.ddd"))).isSameAs(suffix);
+        assertThat(reversed.findFor(new File("/x/aXc.ddd"))).isSameAs(regExpr);
+        assertThat(reversed.findFor(new File("/x/xabc.ddd"))).isNull();
+        assertThat(new FileConfigResolver(new ArrayList<>()).findFor(new File("/x"))).isNull();
+
+    }
+
+    @Test
+    public final void testSameAsPatterns() {
+
+        // PREPARE
+        final Random random = new Random(4711);
+        final List<String> names = Arrays.asList("a", "b", "ab", "a.ddd", "b.ddd", "x", "sub");
+        final List<FileConfig> configs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final String name = names.get(random.nextInt(names.size())).replace(".", "\\.");
+            switch (random.nextInt(5)) {
+            case 0:
+                configs.add(new FileConfig(".*" + name, i, i));
+                break;
+            case 1:
+                configs.add(new FileConfig(".*/" + name, i, i));
+                break;
+            case 2:
+                configs.add(new FileConfig(new File("/r/sub/" + name.replace("\\.", ".")).getAbsolutePath().replace("\\", "\\\\")
+                        .replace(".", "\\."), i, i));
+                break;
+            case 3:
+                configs.add(new FileConfig(".*" + name.substring(0, 1) + ".?\\.ddd", i, i));
+                break;
+            default:
+                configs.add(new FileConfig(".*/sub/.*" + name, i, i));
+                break;
+            }
+        }
+        final FileConfigResolver testee = new FileConfigResolver(configs);
+
+        // TEST & VERIFY
+        for (int i = 0; i < 2000; i++) {
+            final List<FileConfig> list = configs.subList(0, random.nextInt(configs.size()));
+            final FileConfigResolver partial = new FileConfigResolver(list);
+            final File file = new File(random.nextBoolean() ? "/r/sub" : "/r", names.get(random.nextInt(names.size())));
+            assertThat(testee.findFor(file)).as(file.toString()).isSameAs(linear(configs, file));
+            assertThat(partial.findFor(file)).as(file.toString()).isSameAs(linear(list, file));
+        }
+
+    }
+
+    private static FileConfig linear(final List<FileConfig> configs, final File file) {
+        for (final FileConfig config : configs) {
+            if (config.getCompiledName().matcher(file.getAbsolutePath()).matches()) {
+                return config;
+            }
+        }
+        return null;
+    }
+
+    // CHECKSTYLE:ON
+
+}
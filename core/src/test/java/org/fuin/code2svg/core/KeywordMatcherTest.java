@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link KeywordMatcher}.
+ */
+public class KeywordMatcherTest {
+
+    // CHECKSTYLE:OFF
+
+    private static final List<String> KEYWORDS = Arrays.asList("aggregate", "aggregate-id", "cid|consistency", "id", "val[a-z]+",
+            "entity", "entity-id", "énum", "a_b", "x|y|z");
+
+    @Test
+    public final void testFind() {
+
+        // PREPARE
+        final String text = "aggregate-id cidx xconsistency entity-id values énum";
+        final KeywordMatcher testee = new KeywordMatcher(new KeywordTrie(KEYWORDS), text);
+
+        // TEST
+        final List<String> result = new ArrayList<>();
+        while (testee.find()) {
+            result.add(text.substring(testee.start(), testee.end()));
+        }
+
+        // VERIFY
+        assertThat(result).containsExactly("aggregate", "id", "cid", "x", "consistency", "entity", "id", "values", "énum");
+
+    }
+
+    @Test
+    public final void testAppendReplacement() {
+
+        // PREPARE
+        final String text = "a id $1 id\\";
+        final KeywordMatcher testee = new KeywordMatcher(new KeywordTrie(KEYWORDS), text);
+        final StringBuffer sb = new StringBuffer();
+
+        // TEST
+        while (testee.find()) {
+            testee.appendReplacement(sb, "[$0]");
+        }
+        testee.appendTail(sb);
+
+        // VERIFY
+        assertThat(sb.toString()).isEqualTo("a [$0] $1 [$0]\\");
+
+    }
+
+    @Test
+    public final void testSameAsRegularExpression() {
+
+        final Random random = new Random(4711);
+        final List<String> parts = Arrays.asList("aggregate", "-id", "id", "cid", "consistency", "value", "s", "entity", "énum", "a",
+                "_b", "x", "y", "z", " ", "-", "_", "1", "\n");
+        final Pattern pattern = new KeywordElement("keyword", "fill: red", KEYWORDS).getCompiledPattern();
+        for (int i = 0; i < 5000; i++) {
+            final StringBuilder sb = new StringBuilder();
+            final int count = random.nextInt(20);
+            for (int j = 0; j < count; j++) {
+                sb.append(parts.get(random.nextInt(parts.size())));
+            }
+            final String text = sb.toString();
+            assertThat(matches(new KeywordMatcher(new KeywordTrie(KEYWORDS), text))).as(text)
+                    .isEqualTo(matches(new RegExprMatcher(pattern.matcher(text))));
+        }
+
+    }
+
+    @Test
+    public final void testLiteralAlternatives() {
+
+        assertThat(KeywordTrie.literalAlternatives("aggregate-id")).containsExactly("aggregate-id");
+        assertThat(KeywordTrie.literalAlternatives("cid|consistency")).containsExactly("cid", "consistency");
+        assertThat(KeywordTrie.literalAlternatives("val[a-z]+")).isNull();
+        assertThat(KeywordTrie.literalAlternatives("a||b")).isNull();
+
+    }
+
+    private static List<Integer> matches(final ElementMatcher matcher) {
+        final List<Integer> result = new ArrayList<>();
+        while (matcher.find()) {
+            result.add(matcher.start());
+            result.add(matcher.end());
+        }
+        return result;
+    }
+
+    // CHECKSTYLE:ON
+
+}
@@ -6,6 +6,7 @@ import java.io.File;
 
 import javax.json.JsonObject;
 
+import org.fuin.code2svg.core.ModelConfigParser.ImageSettings;
 import org.junit.Test;
 
 public class ModelConfigParserTest {
@@ -49,6 +50,32 @@ public class ModelConfigParserTest {
 
     }
 
+    @Test
+    public void testImageSettings() {
+
+        // PREPARE
+        final ImageSettings testee = new ImageSettings(1, 2, "font-size: 11pt");
+        final FileConfig fileConfig = new FileConfig(".*/abc\\.ddd", 800, 600);
+
+        // TEST
+        final ImageSettings unchanged = testee.apply(null, "");
+        final ImageSettings file = testee.apply(fileConfig, "");
+        final ImageSettings inline = testee.apply(fileConfig,
+                ModelConfigParser.CODE2SVG_KEY + "{\"height\": 1000, \"text-css\": \"font-size: 8pt\"}");
+
+        // VERIFY
+        assertThat(unchanged.getWidth()).isEqualTo(1);
+        assertThat(unchanged.getHeight()).isEqualTo(2);
+        assertThat(unchanged.getTextCss()).isEqualTo("font-size: 11pt");
+        assertThat(file.getWidth()).isEqualTo(800);
+        assertThat(file.getHeight()).isEqualTo(600);
+        assertThat(file.getTextCss()).isEqualTo("font-size: 11pt");
+        assertThat(inline.getWidth()).isEqualTo(800);
+        assertThat(inline.getHeight()).isEqualTo(1000);
+        assertThat(inline.getTextCss()).isEqualTo("font-size: 8pt");
+
+    }
+
     @Test
     public void testExtractJson() {
 
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link OutsideStringMatcher}.
+ */
+public class OutsideStringMatcherTest {
+
+    // CHECKSTYLE:OFF
+
+    /** Lookahead formerly appended to the keyword and number expressions. */
+    private static final String NOT_WITHIN_QUOTES = "(?=([^\"\\\\]*(\\\\.|\"([^\"\\\\]*\\\\.)*[^\"\\\\]*\"))*[^\"]*$)";
+
+    @Test
+    public final void testFind() {
+
+        // PREPARE
+        final String text = "a \"a\" a \"\\\"a\" a";
+        final Pattern pattern = Pattern.compile("\\ba\\b");
+
+        // TEST
+        final List<Integer> result = matches(new OutsideStringMatcher(pattern.matcher(text), text));
+
+        // VERIFY
+        assertThat(result).containsExactly(0, 1, 6, 7, 14, 15);
+
+    }
+
+    @Test
+    public final void testFindUnbalanced() {
+
+        // PREPARE
+        final String text = "a \" a";
+        final Pattern pattern = Pattern.compile("\\ba\\b");
+
+        // TEST
+        final List<Integer> result = matches(new OutsideStringMatcher(pattern.matcher(text), text));
+
+        // VERIFY (Only the text in front of an unterminated string is inside)
+        assertThat(result).containsExactly(4, 5);
+
+    }
+
+    @Test
+    public final void testSameAsLookahead() {
+
+        final Random random = new Random(4711);
+        final List<String> parts = Arrays.asList("a", "1", " ", "\"", "\\", "\n", "\r", "x", "1.5");
+        final Pattern pattern = Pattern.compile("(\\b(a|x)\\b)|(\\b([\\d]+(\\.[\\d]+)?|0x[a-f0-9]+)\\b)");
+        final Pattern legacy = Pattern.compile("((\\b(a|x)\\b)|(\\b([\\d]+(\\.[\\d]+)?|0x[a-f0-9]+)\\b))" + NOT_WITHIN_QUOTES);
+        for (int i = 0; i < 5000; i++) {
+            final StringBuilder sb = new StringBuilder();
+            final int count = random.nextInt(30);
+            for (int j = 0; j < count; j++) {
+                sb.append(parts.get(random.nextInt(parts.size())));
+            }
+            final String text = sb.toString();
+            assertThat(matches(new OutsideStringMatcher(pattern.matcher(text), text))).as(text)
+                    .isEqualTo(matches(new RegExprMatcher(legacy.matcher(text))));
+        }
+
+    }
+
+    private static List<Integer> matches(final ElementMatcher matcher) {
+        final List<Integer> result = new ArrayList<>();
+        while (matcher.find()) {
+            result.add(matcher.start());
+            result.add(matcher.end());
+        }
+        return result;
+    }
+
+    // CHECKSTYLE:ON
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SourcePreparer}.
+ */
+public class SourcePreparerTest {
+
+    // CHECKSTYLE:OFF
+
+    private static final Pattern ENTITY = Pattern.compile("°°\\d+?°°|°°x[0-9A-Fa-f]+?°°");
+
+    @Test
+    public final void testPrepare() {
+        assertThat(SourcePreparer.prepare("a<b> @code2svg:{\"width\":800} \"x\" °°9986°° °°x277A°° °°x°° &"))
+                .isEqualTo("a&lt;b&gt;  &quot;x&quot; &#9986; &#x277A; °°x°° &amp;");
+    }
+
+    @Test
+    public final void testPrepareAllChars() {
+        for (char ch = 0; ch < Character.MAX_VALUE; ch++) {
+            final String text = "a" + ch + "b";
+            assertThat(SourcePreparer.prepare(text)).as("0x" + Integer.toHexString(ch)).isEqualTo(legacy(text));
+        }
+    }
+
+    @Test
+    public final void testPrepareSameAsSteps() {
+
+        final Random random = new Random(4711);
+        final List<String> parts = Arrays.asList("°", "°°", "1", "a", "x", "F", ";", "&", "<", "\"", "'", "\t", "\n", "\u0001",
+                "\u0080", "\uD83D", "\uDE00", "@code2svg:{\"width\":1}", "@code2svg:{", "}", " ");
+        for (int i = 0; i < 20000; i++) {
+            final StringBuilder sb = new StringBuilder();
+            final int count = random.nextInt(25);
+            for (int j = 0; j < count; j++) {
+                sb.append(parts.get(random.nextInt(parts.size())));
+            }
+            final String text = sb.toString();
+            assertThat(SourcePreparer.prepare(text)).as(text).isEqualTo(legacy(text));
+        }
+
+    }
+
+    @Test
+    public final void testPrepareLineColumns() {
+
+        // TEST
+        final SourcePreparer testee = SourcePreparer.prepare("a\tb\n\"x\" °°9986°°@code2svg:{\"width\":1}\n\nend", "\n");
+        final SourcePreparer crlf = SourcePreparer.prepare("ab\r\nc\rd\r\n", "\r\n");
+
+        // VERIFY
+        assertThat(testee.getText()).isEqualTo("a\tb\n&quot;x&quot; &#9986;\n\nend");
+        assertThat(testee.getLineColumns()).containsExactly(6, 5, 0, 3);
+        assertThat(crlf.getLineColumns()).containsExactly(2, 3, 0);
+
+    }
+
+    /**
+     * Steps formerly executed one after the other by {@link Code2Svg#convert(Code2SvgConfig, String)}.
+     */
+    private static String legacy(final String model) {
+        String src = ModelConfigParser.PATTERN.matcher(model).replaceAll("");
+        src = StringEscapeUtils.escapeXml10(src);
+        final Matcher m = ENTITY.matcher(src);
+        final StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            final String code = src.substring(m.start() + 2, m.end() - 2);
+            m.appendReplacement(sb, "&#" + code + ";");
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    // CHECKSTYLE:ON
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SpanIndex}.
+ */
+public class SpanIndexTest {
+
+    // CHECKSTYLE:OFF
+
+    @Test
+    public final void testIsFree() {
+
+        // PREPARE
+        final SpanIndex testee = new SpanIndex(1);
+        testee.add(3, 5);
+        testee.add(10, 10);
+        testee.add(20, 30);
+
+        // TEST & VERIFY
+        assertThat(testee.size()).isEqualTo(3);
+        assertThat(testee.isFree(0, 2)).as("before").isTrue();
+        assertThat(testee.isFree(6, 8)).as("between").isTrue();
+        assertThat(testee.isFree(31, 40)).as("after").isTrue();
+        assertThat(testee.isFree(4, 4)).as("inside").isFalse();
+        assertThat(testee.isFree(3, 4)).as("left inside").isFalse();
+        assertThat(testee.isFree(4, 5)).as("right inside").isFalse();
+        assertThat(testee.isFree(2, 3)).as("left overlap").isFalse();
+        assertThat(testee.isFree(5, 6)).as("right overlap").isFalse();
+        assertThat(testee.isFree(10, 10)).as("empty span").isFalse();
+        assertThat(testee.isFree(0, 40)).as("surrounding").isFalse();
+        assertThat(testee.isFree(11, 19)).as("gap").isTrue();
+
+    }
+
+    @Test
+    public final void testIsFreeEmpty() {
+        assertThat(new SpanIndex(0).isFree(0, 100)).isTrue();
+    }
+
+    @Test
+    public final void testAddOverlapping() {
+
+        // PREPARE
+        final SpanIndex testee = new SpanIndex(1);
+        testee.add(3, 5);
+
+        // TEST
+        try {
+            testee.add(5, 8);
+            fail("Expected exception");
+        } catch (final IllegalArgumentException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).isEqualTo("Span [5, 8] is not after the last span [3, 5]");
+        }
+
+    }
+
+    // CHECKSTYLE:ON
+
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SvgRenderer} and {@link TokenizedSource}.
+ */
+public class SvgRendererTest {
+
+    // CHECKSTYLE:OFF
+
+    private static final String MODEL = "@code2svg:{\"width\":800}\nif \"a<b\" then 12 // x\nelse 3";
+
+    private static CompiledConfig config() {
+        return new CompiledConfig(new Code2SvgConfig.Builder().addElement(new StringElement("string", "fill: blue"))
+                .addElement(new NumberElement("number", "fill: red"))
+                .addElement(new SingleLineCommentElement("sl-comment", "fill: green")).build());
+    }
+
+    @Test
+    public final void testRenderSameAsConvert() throws IOException {
+
+        // PREPARE
+        final CompiledConfig config = config();
+        final StringWriter expected = new StringWriter();
+        new Code2Svg().convert(config, new StringReader(MODEL), expected);
+        final TokenizedSource source = new Code2Svg().tokenize(config, MODEL);
+        final StringWriter writer = new StringWriter();
+
+        // TEST
+        new SvgRenderer().render(source, writer);
+
+        // VERIFY
+        assertThat(writer.toString()).isEqualTo(expected.toString());
+
+    }
+
+    @Test
+    public final void testTokenizedSource() {
+
+        // TEST
+        final TokenizedSource testee = new Code2Svg().tokenize(config(), MODEL);
+
+        // VERIFY
+        assertThat(testee.getConfig().getWidth()).isEqualTo(800);
+        assertThat(testee.getText()).isEqualTo("\nif &quot;a&lt;b&quot; then 12 // x\nelse 3");
+        assertThat(testee.getTokens().size()).isEqualTo(4);
+        assertThat(testee.getText(0)).isEqualTo("&quot;a&lt;b&quot;");
+        assertThat(testee.getElement(0).getName()).isEqualTo("string");
+        assertThat(testee.getText(1)).isEqualTo("12");
+        assertThat(testee.getElement(1).getName()).isEqualTo("number");
+        assertThat(testee.getText(2)).isEqualTo("// x");
+        assertThat(testee.getElement(2).getName()).isEqualTo("sl-comment");
+        assertThat(testee.getText(3)).isEqualTo("3");
+
+    }
+
+    @Test
+    public final void testRenderOnlyUsedCss() throws IOException {
+
+        // PREPARE
+        final TokenizedSource source = new Code2Svg().tokenize(config(), "if 12 then 3");
+        final StringWriter writer = new StringWriter();
+
+        // TEST
+        new SvgRenderer().render(source, writer);
+
+        // VERIFY
+        assertThat(writer.toString()).contains(".number { fill: red }");
+        assertThat(writer.toString()).doesNotContain(".string {", ".sl-comment {");
+        assertThat(SvgRenderer.css(source.getConfig())).contains(".number {", ".string {", ".sl-comment {");
+
+    }
+
+    @Test
+    public final void testRenderCompact() {
+
+        // PREPARE
+        final String ls = Code2Svg.LINE_SEPARATOR;
+        final CompiledConfig config = new CompiledConfig(new Code2SvgConfig.Builder()
+                .addElement(new RegExprElement("op", "fill: red", "[+-]")).addElement(new MultiLineCommentElement("ml", "fill: green"))
+                .addElement(new RegExprElement("empty", "fill: blue", "(?=y)")).build());
+        final String model = ls + "a +- b /* x" + ls + ls + "\ty */" + ls + ls + ls + "c" + ls;
+        final Code2Svg testee = new Code2Svg.Builder().compact(true).build();
+
+        // TEST
+        final String result = testee.convert(config, model);
+
+        // VERIFY
+        assertThat(testee.isCompact()).isTrue();
+        assertThat(result).isEqualTo("<tspan x=\"10\" dy=\"2.4em\"> a <tspan class=\"op\">+-</tspan> b <tspan class=\"ml\">/* x</tspan></tspan>"
+                + ls + "<tspan x=\"10\" dy=\"2.4em\"> <tspan class=\"ml\">    y */</tspan></tspan>" + ls
+                + "<tspan x=\"10\" dy=\"3.6em\"> c</tspan>" + ls);
+        assertThat(new Code2Svg().convert(config, model)).contains("<tspan class=\"op\">+</tspan><tspan class=\"op\">-</tspan>");
+
+    }
+
+    @Test
+    public final void testRenderCompactSameText() throws IOException {
+
+        // PREPARE
+        final CompiledConfig config = config();
+        final String model = "x\n\n\"a\" 1 // c\n\t2\n\n";
+        final StringWriter standard = new StringWriter();
+        final StringWriter compact = new StringWriter();
+        final TokenizedSource source = new Code2Svg().tokenize(config, model);
+
+        // TEST
+        new SvgRenderer().render(source, standard);
+        new SvgRenderer(true).render(source, compact);
+
+        // VERIFY
+        assertThat(compact.toString().length()).isLessThan(standard.toString().length());
+        assertThat(visibleText(compact.toString())).isEqualTo(visibleText(standard.toString()));
+
+    }
+
+    /**
+     * Returns the non-blank lines of the text element without markup.
+     */
+    private static String visibleText(final String svg) {
+        final String text = svg.substring(svg.indexOf("<text"), svg.indexOf("</text>"));
+        final StringBuilder sb = new StringBuilder();
+        for (final String line : text.replaceAll("<[^>]*>", "").split("\\R")) {
+            if (!line.trim().isEmpty()) {
+                sb.append(line).append('|');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public final void testSplit() {
+
+        // PREPARE
+        final String ls = Code2Svg.LINE_SEPARATOR;
+        final CompiledConfig config = new CompiledConfig(new Code2SvgConfig.Builder()
+                .addElement(new MultiLineCommentElement("ml", "fill: green")).addElement(new NumberElement("number", "fill: red"))
+                .build());
+        final TokenizedSource source = new Code2Svg().tokenize(config,
+                "1 /* a" + ls + "b" + ls + "c" + ls + "d */ 2" + ls + "3");
+
+        // TEST
+        final List<TokenizedSource> pages = source.split(2);
+
+        // VERIFY
+        assertThat(pages).hasSize(3);
+        assertThat(pages.get(0).getText()).isEqualTo("1 /* a" + ls + "b");
+        assertThat(pages.get(0).getTokens().size()).isEqualTo(2);
+        assertThat(pages.get(0).getText(0)).isEqualTo("1");
+        assertThat(pages.get(0).getText(1)).isEqualTo("/* a" + ls + "b");
+        assertThat(pages.get(0).getElement(1).getName()).isEqualTo("ml");
+        assertThat(pages.get(1).getText()).isEqualTo("c" + ls + "d */ 2");
+        assertThat(pages.get(1).getTokens().size()).isEqualTo(2);
+        assertThat(pages.get(1).getText(0)).isEqualTo("c" + ls + "d */");
+        assertThat(pages.get(1).getElement(0).getName()).isEqualTo("ml");
+        assertThat(pages.get(1).getText(1)).isEqualTo("2");
+        assertThat(pages.get(2).getText()).isEqualTo("3");
+        assertThat(pages.get(2).getText(0)).isEqualTo("3");
+        assertThat(pages.get(0).getLines()).isEqualTo(2);
+        assertThat(pages.get(0).getColumns()).isEqualTo(6);
+        assertThat(pages.get(2).getLines()).isEqualTo(1);
+        assertThat(pages.get(2).getColumns()).isEqualTo(1);
+        assertThat(source.split(10)).hasSize(1);
+
+    }
+
+    @Test
+    public final void testSplitKeepsTokenOrder() {
+
+        // PREPARE
+        final String ls = Code2Svg.LINE_SEPARATOR;
+        final CompiledConfig config = new CompiledConfig(new Code2SvgConfig.Builder()
+                .addElement(new MultiLineCommentElement("ml", "fill: green")).addElement(new NumberElement("number", "fill: red"))
+                .build());
+        final String text = "a" + ls + "bcd";
+        final TokenStream tokens = new TokenStream(2);
+        tokens.add(0, 2 + ls.length(), 0);
+        tokens.add(1 + ls.length(), 4 + ls.length(), 1);
+        final TokenizedSource source = new TokenizedSource(config, text, tokens, new int[] { 1, 3 });
+
+        // TEST
+        final List<TokenizedSource> pages = source.split(1);
+
+        // VERIFY
+        assertThat(pages).hasSize(2);
+        final TokenStream pageTokens = pages.get(1).getTokens();
+        assertThat(pageTokens.size()).isEqualTo(2);
+        assertThat(pageTokens.getStart(0)).isEqualTo(0);
+        assertThat(pageTokens.getEnd(0)).isEqualTo(3);
+        assertThat(pageTokens.getElement(0)).isEqualTo(1);
+        assertThat(pageTokens.getStart(1)).isEqualTo(0);
+        assertThat(pageTokens.getEnd(1)).isEqualTo(1);
+        assertThat(pageTokens.getElement(1)).isEqualTo(0);
+
+    }
+
+    @Test
+    public final void testRenderAutoSize() throws IOException {
+
+        // PREPARE
+        final CompiledConfig config = config();
+        final TokenizedSource source = new Code2Svg().tokenize(config, "@code2svg:{\"width\":800}\nab\n\t&lt;");
+        final StringWriter writer = new StringWriter();
+
+        // TEST
+        new SvgRenderer(false, true).render(source, writer);
+
+        // VERIFY
+        assertThat(source.getLines()).isEqualTo(3);
+        assertThat(source.getColumns()).isEqualTo(8);
+        // 11pt = 14.67px: 20 + 9 * 0.6 * 14.67 = 99.2 and (3 * 1.2 + 0.4) * 14.67 = 58.67
+        assertThat(writer.toString()).contains("<svg version=\"1.1\" width=\"100\" height=\"59\" viewBox=\"0 0 100 59\" ");
+        assertThat(writer.toString()).doesNotContain("800");
+
+    }
+
+    @Test
+    public final void testFontSize() {
+        assertThat(SvgRenderer.fontSize(null)).isEqualTo(16.0);
+        assertThat(SvgRenderer.fontSize("fill: red")).isEqualTo(16.0);
+        assertThat(SvgRenderer.fontSize("font-size: 12px")).isEqualTo(12.0);
+        assertThat(SvgRenderer.fontSize("font-family: monospace; font-size:9pt")).isEqualTo(12.0);
+        assertThat(SvgRenderer.fontSize("font-size: 1.5em")).isEqualTo(24.0);
+        assertThat(SvgRenderer.fontSize("font-size: 50%")).isEqualTo(8.0);
+    }
+
+    @Test
+    public final void testCustomRenderer() throws IOException {
+
+        // PREPARE
+        final TokenRenderer testee = new TokenRenderer() {
+            @Override
+            public void render(final TokenizedSource source, final Writer writer) throws IOException {
+                final Map<String, Integer> counts = new TreeMap<>();
+                for (int i = 0; i < source.getTokens().size(); i++) {
+                    counts.merge(source.getElement(i).getName(), 1, Integer::sum);
+                }
+                writer.write(counts.toString());
+            }
+        };
+        final StringWriter writer = new StringWriter();
+
+        // TEST
+        testee.render(new Code2Svg().tokenize(config(), MODEL), writer);
+
+        // VERIFY
+        assertThat(writer.toString()).isEqualTo("{number=2, sl-comment=1, string=1}");
+
+    }
+
+    // CHECKSTYLE:ON
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SvgTextBuilder}.
+ */
+public class SvgTextBuilderTest {
+
+    // CHECKSTYLE:OFF
+
+    @Test
+    public final void testAppendWithLineStart() throws IOException {
+
+        // PREPARE
+        final SvgTextBuilder testee = new SvgTextBuilder(16, "\r\n", "|");
+
+        // TEST
+        testee.appendText("a\tb\r\nc\r", 0, 7);
+        testee.appendMarkup("<x>");
+        testee.appendText("\nd\r\n", 0, 4);
+
+        // VERIFY
+        assertThat(testee.toString()).isEqualTo("|a    b\r\n|c\r<x>\nd\r\n|");
+
+    }
+
+    @Test
+    public final void testAppendWithoutLineStart() throws IOException {
+
+        // PREPARE
+        final SvgTextBuilder testee = new SvgTextBuilder(16, "\n", null);
+
+        // TEST
+        testee.appendText("xa\tb\nc", 1, 6);
+        testee.appendMarkup("<x>");
+
+        // VERIFY
+        assertThat(testee.toString()).isEqualTo("a\tb\nc<x>");
+
+    }
+
+    @Test
+    public final void testAppendWithWriter() throws IOException {
+
+        // PREPARE
+        final StringWriter writer = new StringWriter();
+        final SvgTextBuilder testee = new SvgTextBuilder(writer, "\r\n", "|");
+        final StringBuilder expected = new StringBuilder("|");
+
+        // TEST
+        for (int i = 0; i < 5000; i++) {
+            testee.appendText("abc\r", 0, 4);
+            testee.appendText("\n", 0, 1);
+            expected.append("abc\r\n|");
+        }
+        testee.flush();
+
+        // VERIFY
+        assertThat(writer.toString()).isEqualTo(expected.toString());
+        assertThat(testee.toString()).isEmpty();
+
+    }
+
+    @Test
+    public final void testAppendCompact() throws IOException {
+
+        // PREPARE
+        final SvgTextBuilder testee = new SvgTextBuilder(16, "\r\n", lines -> "<" + lines + ">", "</>");
+
+        // TEST
+        testee.appendText("\r\na\tb\r\n\r\n\r", 0, 10);
+        testee.appendMarkup("<x>");
+        testee.appendText("\r\n\r\n", 0, 4);
+        testee.finish();
+
+        // VERIFY
+        assertThat(testee.isCompact()).isTrue();
+        assertThat(testee.toString()).isEqualTo("<2>a    b</>\r\n<2>\r<x></>\r\n");
+
+    }
+
+    @Test
+    public final void testAppendCompactWithWriter() throws IOException {
+
+        // PREPARE
+        final StringWriter writer = new StringWriter();
+        final SvgTextBuilder testee = new SvgTextBuilder(writer, "\r\n", lines -> "<" + lines + ">", "</>");
+        final StringBuilder expected = new StringBuilder();
+
+        // TEST
+        for (int i = 0; i < 5000; i++) {
+            testee.appendText("abc\r", 0, 4);
+            testee.appendText("\n\r\n", 0, 3);
+            expected.append(i == 0 ? "<1>" : "<2>").append("abc</>\r\n");
+        }
+        testee.finish();
+        testee.flush();
+
+        // VERIFY
+        assertThat(writer.toString()).isEqualTo(expected.toString());
+
+    }
+
+    @Test
+    public final void testIsPlain() {
+
+        final SvgTextBuilder testee = new SvgTextBuilder(16, "\r\n", "|");
+
+        assertThat(testee.isPlain("<tspan class=\"a\">")).isTrue();
+        assertThat(testee.isPlain("<tspan class=\"\ta\">")).isFalse();
+        assertThat(testee.isPlain("<tspan class=\"\ra\">")).isFalse();
+        assertThat(testee.isPlain("<tspan class=\"\na\">")).isFalse();
+
+    }
+
+    // CHECKSTYLE:ON
+
+}
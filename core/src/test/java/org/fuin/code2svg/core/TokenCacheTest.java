@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.fuin.utils4j.JaxbUtils;
+import org.fuin.utils4j.Utils4J;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TokenCache}.
+ */
+public class TokenCacheTest {
+
+    // CHECKSTYLE:OFF
+
+    private File dir;
+
+    private CompiledConfig config;
+
+    private String source;
+
+    @Before
+    public void setup() throws IOException {
+        dir = new File(System.getProperty("java.io.tmpdir"), "code2svg-token-cache");
+        FileUtils.deleteDirectory(dir);
+        final URL configUrl = Code2Svg.class.getResource("/code2svg.xml");
+        final Code2SvgConfig cfg = JaxbUtils.unmarshal(Utils4J.readAsString(configUrl, "utf-8", 1024), Code2SvgUtils.JAXB_CLASSES);
+        config = new CompiledConfig(cfg);
+        source = SourcePreparer
+                .prepare(Utils4J.readAsString(Code2Svg.class.getResource("/Alpha3CountryCode.ddd"), "utf-8", 1024));
+    }
+
+    @Test
+    public final void testTokenize() {
+
+        // PREPARE
+        final TokenCache testee = new TokenCache(dir);
+        final TokenStream expected = config.getTokenizer().tokenize(source);
+
+        // TEST
+        final TokenStream first = testee.tokenize(config, source);
+        final TokenStream second = testee.tokenize(config, source);
+        final TokenStream reopened = new TokenCache(dir).tokenize(config, source);
+
+        // VERIFY
+        assertThat(testee.getMisses()).isEqualTo(1);
+        assertThat(testee.getHits()).isEqualTo(1);
+        assertThat(testee.getSize()).isGreaterThan(0);
+        assertSame(first, expected);
+        assertSame(second, expected);
+        assertSame(reopened, expected);
+
+    }
+
+    @Test
+    public final void testOtherConfig() {
+
+        // PREPARE
+        final TokenCache testee = new TokenCache(dir);
+        final CompiledConfig other = new CompiledConfig(
+                new Code2SvgConfig.Builder().addElement(new NumberElement("number", "fill: red")).build());
+
+        // TEST
+        testee.tokenize(config, source);
+        final TokenStream tokens = testee.tokenize(other, source);
+
+        // VERIFY
+        assertThat(testee.getMisses()).isEqualTo(2);
+        assertSame(tokens, other.getTokenizer().tokenize(source));
+
+    }
+
+    @Test
+    public final void testOtherLineSeparator() {
+
+        // PREPARE
+        final TokenCache testee = new TokenCache(dir);
+        final List<Element> elements = Collections.singletonList(new MultiLineCommentElement("ml-comment", "fill: green"));
+        final String fingerprint = ConfigFingerprint.create(elements);
+        final Tokenizer lf = new Tokenizer(elements, "\n");
+        final Tokenizer crLf = new Tokenizer(elements, "\r\n");
+        final String text = "/* a\r\nb */\r\n";
+
+        // TEST
+        final TokenStream first = testee.tokenize(fingerprint, lf, text);
+        final TokenStream second = testee.tokenize(fingerprint, crLf, text);
+        testee.tokenize(fingerprint, lf, text);
+
+        // VERIFY
+        assertThat(TokenCache.key(fingerprint, "\n", text)).isNotEqualTo(TokenCache.key(fingerprint, "\r\n", text));
+        assertThat(testee.getMisses()).isEqualTo(2);
+        assertThat(testee.getHits()).isEqualTo(1);
+        assertSame(first, lf.tokenize(text));
+        assertSame(second, crLf.tokenize(text));
+
+    }
+
+    @Test
+    public final void testInvalidFile() throws IOException {
+
+        // PREPARE
+        final TokenCache testee = new TokenCache(dir);
+        testee.tokenize(config, source);
+        final File file = new File(dir, TokenCache.key(config.getElementsFingerprint(), config.getTokenizer().getLineSeparator(), source) + ".tokens");
+        assertThat(file).exists();
+        FileUtils.write(file, "garbage", StandardCharsets.UTF_8);
+
+        // TEST
+        final TokenStream tokens = testee.tokenize(config, source);
+
+        // VERIFY
+        assertThat(testee.getMisses()).isEqualTo(2);
+        assertSame(tokens, config.getTokenizer().tokenize(source));
+        assertThat(file.length()).isGreaterThan(7);
+
+    }
+
+    @Test
+    public final void testOtherImageSettings() {
+
+        // PREPARE
+        final TokenCache testee = new TokenCache(dir);
+        final CompiledConfig other = config.forModel(null, "@code2svg:{\"width\":123}\n" + source);
+        assertThat(other.getFingerprint()).isNotEqualTo(config.getFingerprint());
+
+        // TEST
+        testee.tokenize(config, source);
+        final TokenStream tokens = testee.tokenize(other, source);
+
+        // VERIFY
+        assertThat(testee.getMisses()).isEqualTo(1);
+        assertThat(testee.getHits()).isEqualTo(1);
+        assertSame(tokens, config.getTokenizer().tokenize(source));
+
+    }
+
+    @Test
+    public final void testInvalidCount() throws IOException {
+
+        // PREPARE
+        final TokenCache testee = new TokenCache(dir);
+        testee.tokenize(config, source);
+        final File file = new File(dir, TokenCache.key(config.getElementsFingerprint(), config.getTokenizer().getLineSeparator(), source) + ".tokens");
+        final byte[] data = FileUtils.readFileToByteArray(file);
+        // Keep magic, version and text length (two bytes) and replace the token count with Integer.MAX_VALUE
+        assertThat(source.length()).isBetween(128, 16383);
+        final byte[] invalid = new byte[] { data[0], data[1], data[2], data[3], data[4], data[5], data[6], (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, 0x07 };
+        FileUtils.writeByteArrayToFile(file, invalid);
+
+        // TEST
+        final TokenStream tokens = testee.tokenize(config, source);
+
+        // VERIFY
+        assertThat(testee.getMisses()).isEqualTo(2);
+        assertSame(tokens, config.getTokenizer().tokenize(source));
+
+    }
+
+    @Test
+    public final void testEvict() {
+
+        // PREPARE
+        final TokenCache testee = new TokenCache(dir, 1000);
+
+        // TEST
+        for (int i = 0; i < 20; i++) {
+            testee.tokenize(config, source + i);
+        }
+
+        // VERIFY
+        assertThat(testee.getSize()).isLessThanOrEqualTo(1000);
+        assertThat(dir.listFiles()).hasSizeLessThan(20);
+        assertThat(new TokenCache(dir).getSize()).isEqualTo(testee.getSize());
+
+    }
+
+    @Test
+    public final void testConvert() {
+
+        // PREPARE
+        final String model = Utils4J.readAsString(Code2Svg.class.getResource("/Alpha3CountryCode.ddd"), "utf-8", 1024);
+        final StringWriter expected = new StringWriter();
+        new Code2Svg().convert(config, new StringReader(model), expected);
+        final TokenCache cache = new TokenCache(dir);
+        final Code2Svg testee = new Code2Svg(cache);
+
+        // TEST
+        final StringWriter first = new StringWriter();
+        testee.convert(config, new StringReader(model), first);
+        final StringWriter second = new StringWriter();
+        testee.convert(config, new StringReader(model), second);
+
+        // VERIFY
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(first.toString()).isEqualTo(expected.toString());
+        assertThat(second.toString()).isEqualTo(expected.toString());
+
+    }
+
+    private static void assertSame(final TokenStream actual, final TokenStream expected) {
+        assertThat(actual.size()).isEqualTo(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.getStart(i)).isEqualTo(expected.getStart(i));
+            assertThat(actual.getEnd(i)).isEqualTo(expected.getEnd(i));
+            assertThat(actual.getElement(i)).isEqualTo(expected.getElement(i));
+        }
+    }
+
+    // CHECKSTYLE:ON
+
+}
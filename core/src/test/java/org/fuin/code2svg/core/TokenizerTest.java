@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link Tokenizer}.
+ */
+public class TokenizerTest {
+
+    // CHECKSTYLE:OFF
+
+    private static final List<Element> ELEMENTS = Arrays.asList(new MultiLineCommentElement("ml-comment", "fill: green"),
+            new SingleLineCommentElement("sl-comment", "fill: green"), new StringElement("string", "fill: blue"),
+            new NumberElement("number", "fill: gray"), new KeywordElement("keyword", "fill: red", Arrays.asList("label", "base")));
+
+    @Test
+    public final void testTag() {
+
+        // PREPARE
+        final Tokenizer testee = new Tokenizer(ELEMENTS, "\n");
+
+        // TEST
+        final String result = testee.tag("label 123 &quot;a&quot; // label 123");
+
+        // VERIFY
+        assertThat(result).isEqualTo("<tspan class=\"keyword\">label</tspan> <tspan class=\"number\">123</tspan> "
+                + "<tspan class=\"string\">&quot;a&quot;</tspan> <tspan class=\"sl-comment\">// label 123</tspan>");
+
+    }
+
+    @Test
+    public final void testTagMultipleLines() {
+
+        // PREPARE
+        final Tokenizer testee = new Tokenizer(ELEMENTS, "\n");
+
+        // TEST
+        final String result = testee.tag("/* label\n base */ base");
+
+        // VERIFY
+        assertThat(result).isEqualTo("<tspan class=\"ml-comment\">/* label</tspan>\n<tspan class=\"ml-comment\"> base */</tspan> "
+                + "<tspan class=\"keyword\">base</tspan>");
+
+    }
+
+    @Test
+    public final void testTokenize() {
+
+        // PREPARE
+        final Tokenizer testee = new Tokenizer(ELEMENTS, "\n");
+
+        // TEST
+        final TokenStream result = testee.tokenize("base // label\n1");
+
+        // VERIFY
+        assertThat(result.size()).isEqualTo(3);
+        assertThat(result.getStart(0)).isEqualTo(0);
+        assertThat(result.getEnd(0)).isEqualTo(4);
+        assertThat(result.getElement(0)).isEqualTo(4);
+        assertThat(result.getStart(1)).isEqualTo(5);
+        assertThat(result.getEnd(1)).isEqualTo(13);
+        assertThat(result.getElement(1)).isEqualTo(1);
+        assertThat(result.getStart(2)).isEqualTo(14);
+        assertThat(result.getEnd(2)).isEqualTo(15);
+        assertThat(result.getElement(2)).isEqualTo(3);
+
+    }
+
+    @Test
+    public final void testClaimedLine() {
+
+        // PREPARE
+        final Tokenizer testee = new Tokenizer(ELEMENTS, "\n");
+
+        // TEST
+        final String result = testee.tag("&quot;a&quot; label &quot;b&quot;\nlabel");
+
+        // VERIFY
+        assertThat(result).isEqualTo("<tspan class=\"string\">&quot;a&quot;</tspan> label <tspan class=\"string\">&quot;b&quot;</tspan>\n"
+                + "<tspan class=\"keyword\">label</tspan>");
+
+    }
+
+    @Test
+    public final void testTagWithoutLineSeparatorInText() {
+
+        // PREPARE
+        final Tokenizer testee = new Tokenizer(ELEMENTS, "\r\n");
+        final StringBuilder text = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("label 1\n");
+            expected.append("<tspan class=\"keyword\">label</tspan> <tspan class=\"number\">1</tspan>\n");
+        }
+
+        // TEST
+        final String result = testee.tag(text.toString());
+
+        // VERIFY
+        assertThat(result).isEqualTo(expected.toString());
+
+    }
+
+    /**
+     * Behavior change to the former "tag and re-scan" approach: It passed the found text to
+     * <code>Matcher.appendReplacement</code>, which removed backslashes and failed on "\$".
+     */
+    @Test
+    public final void testTagCrLfTextWithLfSeparator() {
+
+        // PREPARE
+        final Tokenizer testee = new Tokenizer(ELEMENTS, "\n");
+
+        // TEST
+        final String result = testee.tag("//* a\r\nb */\r\n");
+
+        // VERIFY
+        assertThat(result).isEqualTo("/<tspan class=\"ml-comment\">/* a\r</tspan>\n<tspan class=\"ml-comment\">b */</tspan>\r\n");
+
+    }
+
+    @Test
+    public final void testBackslashesAreKept() {
+
+        // PREPARE
+        final Tokenizer testee = new Tokenizer(ELEMENTS, "\n");
+
+        // TEST
+        final String result = testee.tag("&quot;a\\$\\&quot; // \\n");
+
+        // VERIFY
+        assertThat(result).isEqualTo("<tspan class=\"string\">&quot;a\\$\\&quot;</tspan> <tspan class=\"sl-comment\">// \\n</tspan>");
+
+    }
+
+    /**
+     * Behavior change to the former "tag and re-scan" approach: It searched the already tagged text, so the inserted markup could
+     * split a match that overlaps a previous element, like a line comment that starts with the last slash of a multi-line comment.
+     * The remainder was found and tagged later. Now all elements search the original text and a match that overlaps a previous
+     * element is dropped completely.
+     */
+    @Test
+    public final void testOverlappingMatchIsDropped() {
+
+        // PREPARE
+        final Tokenizer testee = new Tokenizer(ELEMENTS, "\n");
+
+        // TEST
+        final String result = testee.tag("/*/*// label.//");
+
+        // VERIFY
+        assertThat(result).isEqualTo("<tspan class=\"ml-comment\">/*/*/</tspan>/ <tspan class=\"keyword\">label</tspan>.//");
+
+    }
+
+    /**
+     * The former approach searched the tagged text, so the end tag of a previous element was a word boundary for the next one. A
+     * number directly after it was found and dropped because it touches the element. Now the number is searched in the original
+     * text, where there is no word boundary after a letter, and a later part of it is tagged.
+     */
+    @Test
+    public final void testWordBoundaryAfterElement() {
+
+        // PREPARE
+        final Tokenizer testee = new Tokenizer(Arrays.asList(new RegExprElement("block", "fill: green", "begin.*?end"),
+                new NumberElement("number", "fill: gray")), "\n");
+
+        // TEST & VERIFY
+        assertThat(testee.tag("begin end4.5"))
+                .isEqualTo("<tspan class=\"block\">begin end</tspan>4.<tspan class=\"number\">5</tspan>");
+        assertThat(testee.tag("begin end4.54.5"))
+                .isEqualTo("<tspan class=\"block\">begin end</tspan>4.<tspan class=\"number\">54.5</tspan>");
+        assertThat(testee.tag("begin end 4.5"))
+                .isEqualTo("<tspan class=\"block\">begin end</tspan> <tspan class=\"number\">4.5</tspan>");
+
+    }
+
+    // CHECKSTYLE:ON
+
+}
@@ -20,6 +20,9 @@ package org.fuin.code2svg.maven.plugin;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -27,8 +30,10 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.fuin.code2svg.core.Code2Svg;
-import org.fuin.code2svg.core.Code2SvgConfig;
 import org.fuin.code2svg.core.Code2SvgUtils;
+import org.fuin.code2svg.core.CompiledConfig;
+import org.fuin.code2svg.core.ConvertDirResult;
+import org.fuin.code2svg.core.TokenCache;
 import org.fuin.utils4j.JaxbUtils;
 import org.fuin.utils4j.Utils4J;
 import org.slf4j.Logger;
@@ -61,6 +66,76 @@ public final class Code2SvgMojo extends AbstractMojo {
     @Parameter(name = "source-files-dirs")
     private String[] sourceFilesDirs;
 
+    /**
+     * Number of files inside a directory to convert at the same time. Defaults to "1".
+     */
+    @Parameter(name = "parallelism")
+    private Integer parallelism;
+
+    /**
+     * Only converts sources whose content or configuration changed since the last run. Defaults to "false".
+     */
+    @Parameter(name = "incremental")
+    private Boolean incremental;
+
+    /**
+     * Path and file of the state used by the incremental mode. Defaults to "target/code2svg-state.properties".
+     */
+    @Parameter(name = "state-file")
+    private String stateFile;
+
+    /**
+     * Directory for the persistent token cache. The cache is disabled if no directory is set.
+     */
+    @Parameter(name = "token-cache-dir")
+    private String tokenCacheDir;
+
+    /**
+     * Maximum size of the token cache in megabytes. Defaults to "100".
+     */
+    @Parameter(name = "token-cache-size")
+    private Integer tokenCacheSize;
+
+    /**
+     * Writes gzip compressed SVGZ files instead of SVG files. Defaults to "false".
+     */
+    @Parameter(name = "svgz")
+    private Boolean svgz;
+
+    /**
+     * Compression level of SVGZ files from 0 (no compression) to 9 (best compression). Defaults to "9".
+     */
+    @Parameter(name = "svgz-level")
+    private Integer svgzLevel;
+
+    /**
+     * Writes one stylesheet "code2svg.css" into the target directory that is referenced by all SVG files instead of including the
+     * CSS in every file. Defaults to "false".
+     */
+    @Parameter(name = "shared-css")
+    private Boolean sharedCss;
+
+    /**
+     * Creates compact SVG markup with the same visual result: One "tspan" per non-empty line, no markup for empty lines and one tag
+     * for adjacent tokens of the same element. Defaults to "false".
+     */
+    @Parameter(name = "compact")
+    private Boolean compact;
+
+    /**
+     * Calculates width, height and view box of every SVG file from the number of lines and the longest line instead of using the
+     * configured values. Defaults to "false".
+     */
+    @Parameter(name = "auto-size")
+    private Boolean autoSize;
+
+    /**
+     * Maximum number of lines per SVG file. Larger sources are split into pages named like "Example.ddd.1.svg" plus an HTML index
+     * "Example.ddd.html". Defaults to "0" (no pagination).
+     */
+    @Parameter(name = "page-lines")
+    private Integer pageLines;
+
     /**
      * Checks if a variable is not <code>null</code> and throws an <code>IllegalNullArgumentException</code> if this rule is violated.
      * 
@@ -87,23 +162,100 @@ public final class Code2SvgMojo extends AbstractMojo {
         LOG.info("targetDir={}", targetDir);
         final Object[] args = sourceFilesDirs;
         LOG.info("sourceFiles={}", args);
+        LOG.info("parallelism={}", parallelism);
+        LOG.info("incremental={}", incremental);
+        LOG.info("tokenCacheDir={}", tokenCacheDir);
+        LOG.info("svgz={}", svgz);
+        LOG.info("sharedCss={}", sharedCss);
+        LOG.info("compact={}", compact);
+        LOG.info("autoSize={}", autoSize);
+        LOG.info("pageLines={}", pageLines);
 
         final File configFile = new File(config);
         final String configXml = Utils4J.readAsString(url(configFile), "utf-8", 1024);
-        final Code2SvgConfig config = JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES);
+        final CompiledConfig config = new CompiledConfig(JaxbUtils.unmarshal(configXml, Code2SvgUtils.JAXB_CLASSES));
+        final IncrementalState state;
+        if (incremental) {
+            LOG.info("stateFile={}", stateFile);
+            state = IncrementalState.load(new File(stateFile), stateHash(config));
+        } else {
+            state = null;
+        }
 
         LOG.info("Converting '{}' sources to SVG files...", config.getFileExtension());
 
-        final Code2Svg converter = new Code2Svg();
-        for (int i = 0; i < sourceFilesDirs.length; i++) {
-            final File file = new File(sourceFilesDirs[i]);
-            if (file.isDirectory()) {
-                converter.convertDir(config, file, new File(targetDir));
-            } else {
-                converter.convertFile(config, file.getParentFile(), file, new File(targetDir));
+        final TokenCache tokenCache;
+        if (tokenCacheDir == null) {
+            tokenCache = null;
+        } else {
+            tokenCache = new TokenCache(new File(tokenCacheDir), tokenCacheSize * 1024L * 1024L);
+        }
+        final Code2Svg.Builder builder = new Code2Svg.Builder().tokenCache(tokenCache).sharedCss(sharedCss).compact(compact)
+                .autoSize(autoSize).pageLines(pageLines);
+        if (svgz) {
+            LOG.info("svgzLevel={}", svgzLevel);
+            builder.svgz(svgzLevel);
+        }
+        final Code2Svg converter = builder.build();
+        final String extension = converter.getTargetExtension();
+        final File target = new File(targetDir);
+        int skipped = 0;
+        int written = 0;
+        int unchanged = 0;
+        try {
+            for (int i = 0; i < sourceFilesDirs.length; i++) {
+                final File file = new File(sourceFilesDirs[i]);
+                final File srcDir = file.isDirectory() ? file : file.getParentFile();
+                final Predicate<File> filter = srcFile -> state == null
+                        || !state.isUpToDate(srcFile, Code2Svg.getTargetFile(srcDir, srcFile, target, extension));
+                if (file.isDirectory()) {
+                    final ConvertDirResult result = converter.convertDir(config, file, target, parallelism, filter);
+                    if (state != null) {
+                        result.getConverted().forEach(state::converted);
+                    }
+                    skipped = skipped + result.getSkipped().size();
+                    written = written + result.getWrittenCount();
+                    unchanged = unchanged + result.getUnchangedCount();
+                    if (!result.isSuccess()) {
+                        throw new MojoExecutionException("Failed to convert " + result.getFailures().size() + " file(s) in '"
+                                + file + "': " + result.getFailures().keySet());
+                    }
+                } else if (filter.test(file)) {
+                    if (converter.convertFile(config, srcDir, file, target)) {
+                        written++;
+                    } else {
+                        unchanged++;
+                    }
+                    if (state != null) {
+                        state.converted(file);
+                    }
+                } else {
+                    skipped++;
+                }
+            }
+        } finally {
+            if (state != null) {
+                state.save();
             }
         }
+        LOG.info("Wrote {} SVG file(s), {} SVG file(s) had the same content already", written, unchanged);
+        if (skipped > 0) {
+            LOG.info("Skipped {} unchanged source(s)", skipped);
+        }
+        if (tokenCache != null) {
+            LOG.info("Token cache: {} hit(s), {} miss(es)", tokenCache.getHits(), tokenCache.getMisses());
+        }
+
+    }
 
+    /**
+     * Returns a hash over the configuration and all options that affect the output, so changing one of them converts all sources
+     * again in the incremental mode.
+     */
+    private String stateHash(final CompiledConfig config) {
+        final String options = config.getFingerprint() + ";svgz=" + (svgz ? svgzLevel : "-") + ";shared-css=" + sharedCss
+                + ";compact=" + compact + ";auto-size=" + autoSize + ";page-lines=" + pageLines;
+        return Code2SvgUtils.sha256(options.getBytes(StandardCharsets.UTF_8));
     }
 
     private void init() throws MojoExecutionException {
@@ -116,6 +268,36 @@ public final class Code2SvgMojo extends AbstractMojo {
         if (sourceFilesDirs == null || sourceFilesDirs.length == 0) {
             sourceFilesDirs = new String[] { "src/main/resources" };
         }
+        if (parallelism == null) {
+            parallelism = 1;
+        }
+        if (incremental == null) {
+            incremental = false;
+        }
+        if (stateFile == null) {
+            stateFile = "target/code2svg-state.properties";
+        }
+        if (tokenCacheSize == null) {
+            tokenCacheSize = (int) (TokenCache.DEFAULT_MAX_SIZE / (1024 * 1024));
+        }
+        if (svgz == null) {
+            svgz = false;
+        }
+        if (svgzLevel == null) {
+            svgzLevel = Deflater.BEST_COMPRESSION;
+        }
+        if (sharedCss == null) {
+            sharedCss = false;
+        }
+        if (compact == null) {
+            compact = false;
+        }
+        if (autoSize == null) {
+            autoSize = false;
+        }
+        if (pageLines == null) {
+            pageLines = 0;
+        }
     }
 
     /**
@@ -181,6 +363,215 @@ public final class Code2SvgMojo extends AbstractMojo {
         this.sourceFilesDirs = sourceFilesDirs;
     }
 
+    /**
+     * Returns the number of files inside a directory to convert at the same time.
+     * 
+     * @return Parallelism level.
+     */
+    public final Integer getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of files inside a directory to convert at the same time.
+     * 
+     * @param parallelism
+     *            Parallelism level.
+     */
+    public final void setParallelism(final Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns if only changed sources are converted.
+     * 
+     * @return TRUE if the incremental mode is enabled.
+     */
+    public final Boolean getIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Sets if only changed sources are converted.
+     * 
+     * @param incremental
+     *            TRUE to enable the incremental mode.
+     */
+    public final void setIncremental(final Boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Returns the path and name of the state file used by the incremental mode.
+     * 
+     * @return State file.
+     */
+    public final String getStateFile() {
+        return stateFile;
+    }
+
+    /**
+     * Sets the path and name of the state file used by the incremental mode.
+     * 
+     * @param stateFile
+     *            State file.
+     */
+    public final void setStateFile(final String stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Returns the directory of the persistent token cache.
+     * 
+     * @return Directory or <code>null</code> if the cache is disabled.
+     */
+    public final String getTokenCacheDir() {
+        return tokenCacheDir;
+    }
+
+    /**
+     * Sets the directory of the persistent token cache.
+     * 
+     * @param tokenCacheDir
+     *            Directory or <code>null</code> to disable the cache.
+     */
+    public final void setTokenCacheDir(final String tokenCacheDir) {
+        this.tokenCacheDir = tokenCacheDir;
+    }
+
+    /**
+     * Returns the maximum size of the token cache.
+     * 
+     * @return Size in megabytes.
+     */
+    public final Integer getTokenCacheSize() {
+        return tokenCacheSize;
+    }
+
+    /**
+     * Sets the maximum size of the token cache.
+     * 
+     * @param tokenCacheSize
+     *            Size in megabytes.
+     */
+    public final void setTokenCacheSize(final Integer tokenCacheSize) {
+        this.tokenCacheSize = tokenCacheSize;
+    }
+
+    /**
+     * Returns the information if gzip compressed SVGZ files are written.
+     * 
+     * @return TRUE if SVGZ files are written.
+     */
+    public final Boolean getSvgz() {
+        return svgz;
+    }
+
+    /**
+     * Sets the information if gzip compressed SVGZ files are written.
+     * 
+     * @param svgz
+     *            TRUE to write SVGZ files.
+     */
+    public final void setSvgz(final Boolean svgz) {
+        this.svgz = svgz;
+    }
+
+    /**
+     * Returns the compression level of SVGZ files.
+     * 
+     * @return Level from 0 to 9.
+     */
+    public final Integer getSvgzLevel() {
+        return svgzLevel;
+    }
+
+    /**
+     * Sets the compression level of SVGZ files.
+     * 
+     * @param svgzLevel
+     *            Level from 0 to 9.
+     */
+    public final void setSvgzLevel(final Integer svgzLevel) {
+        this.svgzLevel = svgzLevel;
+    }
+
+    /**
+     * Returns the information if all SVG files reference a shared stylesheet.
+     * 
+     * @return TRUE if a shared stylesheet is written.
+     */
+    public final Boolean getSharedCss() {
+        return sharedCss;
+    }
+
+    /**
+     * Sets the information if all SVG files reference a shared stylesheet.
+     * 
+     * @param sharedCss
+     *            TRUE to write a shared stylesheet.
+     */
+    public final void setSharedCss(final Boolean sharedCss) {
+        this.sharedCss = sharedCss;
+    }
+
+    /**
+     * Returns the information if compact SVG markup is created.
+     * 
+     * @return TRUE if the markup is compact.
+     */
+    public final Boolean getCompact() {
+        return compact;
+    }
+
+    /**
+     * Sets the information if compact SVG markup is created.
+     * 
+     * @param compact
+     *            TRUE for compact markup.
+     */
+    public final void setCompact(final Boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Returns the information if the size of the SVG files is calculated.
+     * 
+     * @return TRUE if width and height are calculated from the text.
+     */
+    public final Boolean getAutoSize() {
+        return autoSize;
+    }
+
+    /**
+     * Sets the information if the size of the SVG files is calculated.
+     * 
+     * @param autoSize
+     *            TRUE to calculate width and height from the text.
+     */
+    public final void setAutoSize(final Boolean autoSize) {
+        this.autoSize = autoSize;
+    }
+
+    /**
+     * Returns the maximum number of lines per SVG file.
+     * 
+     * @return Lines per page or 0 if the sources are not paginated.
+     */
+    public final Integer getPageLines() {
+        return pageLines;
+    }
+
+    /**
+     * Sets the maximum number of lines per SVG file.
+     * 
+     * @param pageLines
+     *            Lines per page or 0 to disable pagination.
+     */
+    public final void setPageLines(final Integer pageLines) {
+        this.pageLines = pageLines;
+    }
+
     private static URL url(File file) {
         try {
             return file.toURI().toURL();
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.maven.plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.code2svg.core.Code2SvgUtils;
+import org.fuin.utils4j.Utils4J;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * State of the last conversion used to skip sources that did not change. The state file maps the path of every source to the
+ * SHA-256 hash of its content. The hash of the configuration is stored as well. If it changes, all previous entries are dropped,
+ * so every source is converted again.
+ */
+final class IncrementalState {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalState.class);
+
+    private static final String CONFIG_KEY = "@config";
+
+    private final File file;
+
+    private final String configHash;
+
+    private final Properties hashes;
+
+    private final Map<File, String> pending;
+
+    /**
+     * Constructor with all data.
+     * 
+     * @param file
+     *            State file.
+     * @param configHash
+     *            Hash of the configuration.
+     * @param hashes
+     *            Source hashes of the last run.
+     */
+    private IncrementalState(final File file, final String configHash, final Properties hashes) {
+        super();
+        this.file = file;
+        this.configHash = configHash;
+        this.hashes = hashes;
+        this.pending = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Reads the state of the last run. A missing or unreadable state file or a different configuration hash results in an empty
+     * state.
+     * 
+     * @param file
+     *            State file.
+     * @param configHash
+     *            Hash of the current configuration.
+     * 
+     * @return State.
+     */
+    static IncrementalState load(@NotNull final File file, @NotNull final String configHash) {
+        Utils4J.checkNotNull("file", file);
+        Utils4J.checkNotEmpty("configHash", configHash);
+        final Properties props = new Properties();
+        if (file.exists()) {
+            try (final InputStream in = new FileInputStream(file)) {
+                props.load(in);
+            } catch (final IOException ex) {
+                LOG.warn("Ignoring unreadable state file: " + file, ex);
+                props.clear();
+            }
+        }
+        if (!configHash.equals(props.getProperty(CONFIG_KEY))) {
+            if (!props.isEmpty()) {
+                LOG.info("Configuration changed - Converting all sources");
+            }
+            props.clear();
+        }
+        props.remove(CONFIG_KEY);
+        return new IncrementalState(file, configHash, props);
+    }
+
+    /**
+     * Determines if a source is unchanged since the last run. The hash of the source is remembered, so it can be stored with
+     * {@link #converted(File)} after the conversion.
+     * 
+     * @param srcFile
+     *            Source file.
+     * @param targetFile
+     *            File the source is converted to.
+     * 
+     * @return TRUE if the content of the source did not change and the target file still exists.
+     */
+    boolean isUpToDate(@NotNull final File srcFile, @NotNull final File targetFile) {
+        final byte[] data;
+        try {
+            data = Files.readAllBytes(srcFile.toPath());
+        } catch (final IOException ex) {
+            // Let the conversion report the problem
+            return false;
+        }
+        final String hash = Code2SvgUtils.sha256(data);
+        final String key = key(srcFile);
+        synchronized (hashes) {
+            if (hash.equals(hashes.getProperty(key)) && targetFile.exists()) {
+                return true;
+            }
+            hashes.remove(key);
+        }
+        pending.put(srcFile, hash);
+        return false;
+    }
+
+    /**
+     * Marks a source as successfully converted.
+     * 
+     * @param srcFile
+     *            Source file.
+     */
+    void converted(@NotNull final File srcFile) {
+        final String hash = pending.remove(srcFile);
+        if (hash != null) {
+            synchronized (hashes) {
+                hashes.setProperty(key(srcFile), hash);
+            }
+        }
+    }
+
+    /**
+     * Writes the state file.
+     */
+    void save() {
+        final Properties props = new Properties();
+        synchronized (hashes) {
+            props.putAll(hashes);
+        }
+        props.setProperty(CONFIG_KEY, configHash);
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        try (final OutputStream out = new FileOutputStream(file)) {
+            props.store(out, "code2svg incremental state");
+        } catch (final IOException ex) {
+            throw new RuntimeException("Error writing state file: " + file, ex);
+        }
+    }
+
+    private static String key(final File file) {
+        return file.getAbsolutePath();
+    }
+
+}
@@ -58,6 +58,79 @@ public class Code2SvgMojoTest {
 
     }
 
+    @Test
+    public void testExecuteIncremental() throws MojoExecutionException, IOException {
+
+        // PREPARE
+        final File configFile = copy("/code-2-svg.xml", this.getClass().getSimpleName() + "-code-2-svg.xml");
+        final File sourceFile = copy("/Alpha3CountryCode.ddd", this.getClass().getSimpleName() + "-Alpha3CountryCode.ddd");
+        final File targetDir = sourceFile.getParentFile();
+        final File targetFile = new File(targetDir, sourceFile.getName() + ".svg");
+        final File stateFile = new File(targetDir, sourceFile.getName() + ".state");
+
+        // TEST & VERIFY
+        execute(configFile, sourceFile, stateFile);
+        assertThat(targetFile.length()).isGreaterThan(1);
+
+        // Unchanged source is not converted again
+        FileUtils.fileWrite(targetFile, "x");
+        execute(configFile, sourceFile, stateFile);
+        assertThat(FileUtils.fileRead(targetFile)).isEqualTo("x");
+
+        // Formatting the configuration does not change the output
+        FileUtils.fileAppend(configFile.toString(), " ");
+        execute(configFile, sourceFile, stateFile);
+        assertThat(FileUtils.fileRead(targetFile)).isEqualTo("x");
+
+        // Changed configuration converts all sources
+        FileUtils.fileWrite(configFile.toString(), FileUtils.fileRead(configFile).replace("fill: red", "fill: blue"));
+        execute(configFile, sourceFile, stateFile);
+        assertThat(targetFile.length()).isGreaterThan(1);
+
+        // Changed source is converted
+        FileUtils.fileWrite(targetFile, "x");
+        FileUtils.fileAppend(sourceFile.toString(), " ");
+        execute(configFile, sourceFile, stateFile);
+        assertThat(targetFile.length()).isGreaterThan(1);
+
+    }
+
+    @Test
+    public void testExecuteIncrementalOptionChanged() throws MojoExecutionException, IOException {
+
+        // PREPARE
+        final File configFile = copy("/code-2-svg.xml", this.getClass().getSimpleName() + "-code-2-svg.xml");
+        final File sourceFile = copy("/Alpha3CountryCode.ddd", this.getClass().getSimpleName() + "-Alpha3CountryCode.ddd");
+        final File targetDir = sourceFile.getParentFile();
+        final File targetFile = new File(targetDir, sourceFile.getName() + ".svg");
+        final File stateFile = new File(targetDir, sourceFile.getName() + ".state");
+        execute(configFile, sourceFile, stateFile);
+        FileUtils.fileWrite(targetFile, "x");
+
+        // TEST
+        execute(configFile, sourceFile, stateFile, true);
+
+        // VERIFY
+        assertThat(targetFile.length()).isGreaterThan(1);
+
+    }
+
+    private static void execute(final File configFile, final File sourceFile, final File stateFile) throws MojoExecutionException {
+        execute(configFile, sourceFile, stateFile, false);
+    }
+
+    private static void execute(final File configFile, final File sourceFile, final File stateFile, final boolean compact)
+            throws MojoExecutionException {
+        final Code2SvgMojo testee = new Code2SvgMojo();
+        testee.setCompact(compact);
+        testee.setConfigFile(configFile.toString());
+        testee.setTargetDir(sourceFile.getParentFile().toString());
+        testee.setSourceFilesDirs(new String[] { sourceFile.toString() });
+        testee.setIncremental(true);
+        testee.setStateFile(stateFile.toString());
+        testee.execute();
+    }
+
     private static File copy(final String fromResource, final String toFile) {
         try {
             final URL url = Code2Svg.class.getResource(fromResource);
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.maven.plugin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Test for {@link IncrementalState}.
+ */
+public class IncrementalStateTest {
+
+    // CHECKSTYLE:OFF Test
+
+    @Test
+    public void testIsUpToDate() throws IOException {
+
+        // PREPARE
+        final File dir = new File(FileUtils.getTempDirectory(), getClass().getSimpleName());
+        FileUtils.deleteQuietly(dir);
+        final File stateFile = new File(dir, "state.properties");
+        final File srcFile = new File(dir, "a.ddd");
+        final File targetFile = new File(dir, "a.ddd.svg");
+        FileUtils.write(srcFile, "value-object A", StandardCharsets.UTF_8);
+        FileUtils.write(targetFile, "<svg/>", StandardCharsets.UTF_8);
+
+        // TEST & VERIFY
+        final IncrementalState first = IncrementalState.load(stateFile, "config1");
+        assertThat(first.isUpToDate(srcFile, targetFile)).isFalse();
+        first.converted(srcFile);
+        first.save();
+
+        assertThat(IncrementalState.load(stateFile, "config1").isUpToDate(srcFile, targetFile)).isTrue();
+        assertThat(IncrementalState.load(stateFile, "config2").isUpToDate(srcFile, targetFile)).isFalse();
+
+        FileUtils.deleteQuietly(targetFile);
+        assertThat(IncrementalState.load(stateFile, "config1").isUpToDate(srcFile, targetFile)).isFalse();
+
+        FileUtils.write(targetFile, "<svg/>", StandardCharsets.UTF_8);
+        FileUtils.write(srcFile, "value-object B", StandardCharsets.UTF_8);
+        assertThat(IncrementalState.load(stateFile, "config1").isUpToDate(srcFile, targetFile)).isFalse();
+
+    }
+
+    // CHECKSTYLE:ON
+
+}
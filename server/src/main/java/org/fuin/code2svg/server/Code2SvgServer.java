@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.validation.constraints.NotNull;
+
+import org.fuin.code2svg.core.Code2Svg;
+import org.fuin.code2svg.core.Code2SvgConfig;
+import org.fuin.code2svg.core.Code2SvgUtils;
+import org.fuin.code2svg.core.CompiledConfig;
+import org.fuin.utils4j.JaxbUtils;
+import org.fuin.utils4j.Utils4J;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP service that converts sources into SVG documents. The server only listens on the loopback address and offers two
+ * endpoints:
+ * <ul>
+ * <li><code>POST /convert/{name}</code> - Converts the UTF-8 encoded request body using the configuration with the given name
+ * and returns the SVG document.</li>
+ * <li><code>GET /configs</code> - Returns the names of all configurations, one per line.</li>
+ * </ul>
+ * Requests are handled by a fixed number of threads, one per available processor. Results are kept in a least recently used
+ * cache that is keyed by the hash of the source plus the fingerprint of the configuration, so a repeated request for the same
+ * source returns the SVG without converting it again. The cache is limited by the total size of the SVG documents.
+ */
+public final class Code2SvgServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Code2SvgServer.class);
+
+    /** Default maximum total size of the cached SVG documents in bytes. */
+    public static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
+    /** Maximum size of a request body in bytes. */
+    public static final int MAX_BODY_SIZE = 10 * 1024 * 1024;
+
+    /** Header that tells if the response was taken from the cache ("HIT") or not ("MISS"). */
+    public static final String CACHE_HEADER = "X-Cache";
+
+    private static final String CONVERT_PATH = "/convert/";
+
+    private static final String CONFIGS_PATH = "/configs";
+
+    private static final String PORT = "--port=";
+
+    private static final String CACHE_SIZE = "--cache-size=";
+
+    private final Map<String, CompiledConfig> configs;
+
+    private final LruCache<String, byte[]> cache;
+
+    private final Code2Svg converter;
+
+    private final int port;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param port
+     *            Port to listen to or zero to use any free port.
+     * @param cacheSize
+     *            Maximum total size of the cached SVG documents in bytes. A value of zero disables the cache.
+     * @param configs
+     *            Configurations by name.
+     */
+    public Code2SvgServer(final int port, final long cacheSize, @NotNull final Map<String, Code2SvgConfig> configs) {
+        super();
+        Utils4J.checkNotNull("configs", configs);
+        if (port < 0) {
+            throw new IllegalArgumentException("The argument 'port' cannot be negative: " + port);
+        }
+        this.port = port;
+        this.cache = new LruCache<>(cacheSize, svg -> svg.length);
+        this.converter = new Code2Svg();
+        final Map<String, CompiledConfig> map = new TreeMap<>();
+        configs.forEach((name, config) -> {
+            Utils4J.checkNotEmpty("name", name);
+            Utils4J.checkNotNull("config", config);
+            map.put(name, new CompiledConfig(config));
+        });
+        this.configs = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Starts listening on the loopback address.
+     *
+     * @throws IOException
+     *             Error creating the server socket.
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The server is already running");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(CONVERT_PATH, this::handleConvert);
+        server.createContext(CONFIGS_PATH, this::handleConfigs);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        server.setExecutor(executor);
+        server.start();
+        LOG.info("Listening on {}", server.getAddress());
+    }
+
+    /**
+     * Stops the server. Does nothing if the server is not running.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * Returns the port the server listens to.
+     *
+     * @return Actual port if the server is running, else the port given in the constructor.
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            return port;
+        }
+        return server.getAddress().getPort();
+    }
+
+    private void handleConfigs(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Method not allowed: " + exchange.getRequestMethod());
+                return;
+            }
+            final StringBuilder sb = new StringBuilder();
+            configs.keySet().forEach(name -> sb.append(name).append('\n'));
+            send(exchange, 200, sb.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleConvert(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Method not allowed: " + exchange.getRequestMethod());
+                return;
+            }
+            final String name = exchange.getRequestURI().getPath().substring(CONVERT_PATH.length());
+            final CompiledConfig config = configs.get(name);
+            if (config == null) {
+                send(exchange, 404, "Unknown configuration: '" + name + "'");
+                return;
+            }
+            final byte[] body = read(exchange.getRequestBody());
+            if (body == null) {
+                send(exchange, 413, "The request body exceeds " + MAX_BODY_SIZE + " bytes");
+                return;
+            }
+            final String key = Code2SvgUtils.sha256(body) + ":" + config.getFingerprint();
+            byte[] svg = cache.get(key);
+            final boolean hit = svg != null;
+            if (!hit) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream(body.length * 4);
+                try {
+                    converter.convert(config, new ByteArrayInputStream(body), out);
+                } catch (final RuntimeException ex) {
+                    LOG.debug("Failed to convert source with configuration '{}'", name, ex);
+                    send(exchange, 400, "Failed to convert source: " + ex.getMessage());
+                    return;
+                }
+                svg = out.toByteArray();
+                cache.put(key, svg);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/svg+xml; charset=utf-8");
+            exchange.getResponseHeaders().set(CACHE_HEADER, hit ? "HIT" : "MISS");
+            exchange.sendResponseHeaders(200, svg.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(svg);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final String text) throws IOException {
+        final byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, data.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(data);
+        }
+    }
+
+    /**
+     * Reads the request body.
+     * 
+     * @return Body or <code>null</code> if it exceeds the maximum size.
+     */
+    private static byte[] read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8 * 1024];
+        int count;
+        while ((count = in.read(buf)) != -1) {
+            if (out.size() + count > MAX_BODY_SIZE) {
+                return null;
+            }
+            out.write(buf, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    public static void main(String[] args) {
+
+        int port = 8080;
+        long cacheSize = DEFAULT_CACHE_SIZE;
+        final Map<String, Code2SvgConfig> configs = new TreeMap<>();
+        try {
+            for (final String arg : args) {
+                if (arg.startsWith(PORT)) {
+                    port = Integer.parseInt(arg.substring(PORT.length()));
+                } else if (arg.startsWith(CACHE_SIZE)) {
+                    cacheSize = Long.parseLong(arg.substring(CACHE_SIZE.length()));
+                } else if (arg.indexOf('=') > 0) {
+                    final int p = arg.indexOf('=');
+                    final File configFile = new File(arg.substring(p + 1));
+                    Utils4J.checkValidFile(configFile);
+                    final String xml = new String(Files.readAllBytes(configFile.toPath()), StandardCharsets.UTF_8);
+                    configs.put(arg.substring(0, p), JaxbUtils.unmarshal(xml, Code2SvgUtils.JAXB_CLASSES));
+                } else {
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+            }
+        } catch (final IOException | RuntimeException ex) {
+            System.err.println(ex.getMessage());
+            configs.clear();
+        }
+        if (configs.isEmpty()) {
+            System.out.println("Required arguments: [" + PORT + "<port>] [" + CACHE_SIZE
+                    + "<max bytes>] <name 1>=<config-path-and-name 1> ... <name N>=<config-path-and-name N>");
+            System.exit(1);
+        }
+
+        try {
+            final Code2SvgServer server = new Code2SvgServer(port, cacheSize, configs);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            server.start();
+        } catch (final IOException | RuntimeException ex) {
+            ex.printStackTrace(System.err);
+            System.exit(2);
+        }
+
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Thread safe cache that removes the least recently used entries if the total size of all values exceeds a maximum.
+ *
+ * @param <K>
+ *            Type of the key.
+ * @param <V>
+ *            Type of the value.
+ */
+final class LruCache<K, V> {
+
+    private final Map<K, V> map;
+
+    private final long maxSize;
+
+    private final ToIntFunction<V> sizeOf;
+
+    private long size;
+
+    /**
+     * Constructor with maximum size.
+     *
+     * @param maxSize
+     *            Maximum total size of all values. A value of zero disables the cache.
+     * @param sizeOf
+     *            Returns the size of a value.
+     */
+    LruCache(final long maxSize, @NotNull final ToIntFunction<V> sizeOf) {
+        super();
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The argument 'maxSize' cannot be negative: " + maxSize);
+        }
+        Utils4J.checkNotNull("sizeOf", sizeOf);
+        this.map = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxSize = maxSize;
+        this.sizeOf = sizeOf;
+    }
+
+    /**
+     * Returns a value and marks it as recently used.
+     *
+     * @param key
+     *            Key.
+     *
+     * @return Value or <code>null</code> if the key is unknown.
+     */
+    @Nullable
+    synchronized V get(@NotNull final K key) {
+        Utils4J.checkNotNull("key", key);
+        return map.get(key);
+    }
+
+    /**
+     * Adds or replaces a value. A value that is larger than the maximum size is not cached.
+     *
+     * @param key
+     *            Key.
+     * @param value
+     *            Value.
+     */
+    synchronized void put(@NotNull final K key, @NotNull final V value) {
+        Utils4J.checkNotNull("key", key);
+        Utils4J.checkNotNull("value", value);
+        final int valueSize = sizeOf.applyAsInt(value);
+        if (valueSize > maxSize) {
+            return;
+        }
+        final V old = map.put(key, value);
+        if (old != null) {
+            size -= sizeOf.applyAsInt(old);
+        }
+        size += valueSize;
+        final Iterator<V> it = map.values().iterator();
+        while (size > maxSize) {
+            size -= sizeOf.applyAsInt(it.next());
+            it.remove();
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return Current number of entries.
+     */
+    synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns the total size of all values.
+     *
+     * @return Current total size.
+     */
+    synchronized long totalSize() {
+        return size;
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.fuin.code2svg.core.Code2Svg;
+import org.fuin.code2svg.core.Code2SvgConfig;
+import org.fuin.code2svg.core.RegExprElement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Code2SvgServer}.
+ */
+public class Code2SvgServerTest {
+
+    // CHECKSTYLE:OFF
+
+    private static final String SOURCE = "a \"b\" c";
+
+    private Code2SvgConfig config;
+
+    private Code2SvgServer testee;
+
+    @Before
+    public void setup() throws IOException {
+        config = new Code2SvgConfig.Builder().addElement(new RegExprElement("string", "fill: blue", "\".*?\"")).build();
+        testee = new Code2SvgServer(0, 1024 * 1024, Collections.singletonMap("test", config));
+        testee.start();
+    }
+
+    @After
+    public void teardown() {
+        testee.stop();
+    }
+
+    @Test
+    public final void testConvert() throws IOException {
+
+        // PREPARE
+        final StringWriter writer = new StringWriter();
+        new Code2Svg().convert(config, new StringReader(SOURCE), writer);
+        final String expected = writer.toString();
+
+        // TEST
+        final HttpURLConnection first = request("POST", "/convert/test", SOURCE);
+        final HttpURLConnection second = request("POST", "/convert/test", SOURCE);
+
+        // VERIFY
+        assertThat(first.getResponseCode()).isEqualTo(200);
+        assertThat(first.getHeaderField(Code2SvgServer.CACHE_HEADER)).isEqualTo("MISS");
+        assertThat(first.getContentType()).startsWith("image/svg+xml");
+        assertThat(body(first.getInputStream())).isEqualTo(expected);
+        assertThat(second.getResponseCode()).isEqualTo(200);
+        assertThat(second.getHeaderField(Code2SvgServer.CACHE_HEADER)).isEqualTo("HIT");
+        assertThat(body(second.getInputStream())).isEqualTo(expected);
+
+    }
+
+    @Test
+    public final void testConfigs() throws IOException {
+
+        // TEST
+        final HttpURLConnection con = request("GET", "/configs", null);
+
+        // VERIFY
+        assertThat(con.getResponseCode()).isEqualTo(200);
+        assertThat(body(con.getInputStream())).isEqualTo("test\n");
+
+    }
+
+    @Test
+    public final void testErrors() throws IOException {
+
+        assertThat(request("POST", "/convert/unknown", SOURCE).getResponseCode()).isEqualTo(404);
+        assertThat(request("GET", "/convert/test", null).getResponseCode()).isEqualTo(405);
+        assertThat(request("POST", "/convert/test", "@code2svg:{bad}").getResponseCode()).isEqualTo(400);
+
+    }
+
+    private HttpURLConnection request(final String method, final String path, final String body) throws IOException {
+        final HttpURLConnection con = (HttpURLConnection) new URL("http://localhost:" + testee.getPort() + path).openConnection();
+        con.setRequestMethod(method);
+        if (body != null) {
+            con.setDoOutput(true);
+            try (final OutputStream out = con.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return con;
+    }
+
+    private static String body(final InputStream in) throws IOException {
+        try (final InputStream is = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[1024];
+            int count;
+            while ((count = is.read(buf)) != -1) {
+                out.write(buf, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // CHECKSTYLE:ON
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.code2svg.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link LruCache}.
+ */
+public class LruCacheTest {
+
+    // CHECKSTYLE:OFF
+
+    @Test
+    public final void testRemoveLeastRecentlyUsed() {
+
+        // PREPARE
+        final LruCache<String, String> testee = new LruCache<>(6, String::length);
+        testee.put("a", "11");
+        testee.put("b", "22");
+
+        // TEST
+        assertThat(testee.get("a")).isEqualTo("11");
+        testee.put("c", "333");
+
+        // VERIFY
+        assertThat(testee.size()).isEqualTo(2);
+        assertThat(testee.totalSize()).isEqualTo(5);
+        assertThat(testee.get("a")).isEqualTo("11");
+        assertThat(testee.get("b")).isNull();
+        assertThat(testee.get("c")).isEqualTo("333");
+
+    }
+
+    @Test
+    public final void testRemoveSeveralToMakeRoom() {
+
+        // PREPARE
+        final LruCache<String, String> testee = new LruCache<>(6, String::length);
+        testee.put("a", "1");
+        testee.put("b", "22");
+        testee.put("c", "333");
+
+        // TEST
+        testee.put("d", "4444");
+
+        // VERIFY
+        assertThat(testee.size()).isEqualTo(1);
+        assertThat(testee.totalSize()).isEqualTo(4);
+        assertThat(testee.get("d")).isEqualTo("4444");
+
+    }
+
+    @Test
+    public final void testReplace() {
+
+        // PREPARE
+        final LruCache<String, String> testee = new LruCache<>(6, String::length);
+        testee.put("a", "11");
+
+        // TEST
+        testee.put("a", "1111");
+
+        // VERIFY
+        assertThat(testee.size()).isEqualTo(1);
+        assertThat(testee.totalSize()).isEqualTo(4);
+        assertThat(testee.get("a")).isEqualTo("1111");
+
+    }
+
+    @Test
+    public final void testValueLargerThanMaximum() {
+
+        // PREPARE
+        final LruCache<String, String> testee = new LruCache<>(6, String::length);
+        testee.put("a", "11");
+
+        // TEST
+        testee.put("b", "1234567");
+
+        // VERIFY
+        assertThat(testee.get("b")).isNull();
+        assertThat(testee.get("a")).isEqualTo("11");
+        assertThat(testee.totalSize()).isEqualTo(2);
+
+    }
+
+    @Test
+    public final void testDisabled() {
+
+        // PREPARE
+        final LruCache<String, String> testee = new LruCache<>(0, String::length);
+
+        // TEST
+        testee.put("a", "1");
+
+        // VERIFY
+        assertThat(testee.size()).isEqualTo(0);
+        assertThat(testee.get("a")).isNull();
+
+    }
+
+    // CHECKSTYLE:ON
+
+}